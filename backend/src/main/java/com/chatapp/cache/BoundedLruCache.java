@@ -0,0 +1,166 @@
+package com.chatapp.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Small size-bounded LRU map with hit/miss counters and an optional TTL.
+ * Values are loaded outside the lock so a slow loader never blocks other readers.
+ *
+ * Each load records a generation for its key, and invalidating the key drops
+ * it. A load that read its value before an invalidation but finishes after it
+ * is returned to its caller but not cached, so it cannot bring back the state
+ * the invalidation removed.
+ */
+public class BoundedLruCache<K, V> {
+
+    private record Entry<V>(V value, long loadedAt) {}
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    // Keys with a load in flight -> generation of the latest one; guarded by entries
+    private final Map<K, Long> loading = new HashMap<>();
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder staleLoads = new LongAdder();
+
+    public BoundedLruCache(int maxEntries) {
+        this(maxEntries, 0);
+    }
+
+    /** @param ttlMs how long an entry is served after it was stored; 0 = until evicted or invalidated */
+    public BoundedLruCache(int maxEntries, long ttlMs) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedLruCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached value, or load and cache it. A null result from the
+     * loader is returned as-is and not cached.
+     */
+    public V get(K key, Function<K, V> loader) {
+        long loadGeneration;
+        synchronized (entries) {
+            V value = liveValue(key);
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+            loadGeneration = ++generation;
+            loading.put(key, loadGeneration);
+        }
+
+        misses.increment();
+        V value = null;
+        try {
+            value = loader.apply(key);
+        } finally {
+            synchronized (entries) {
+                Long current = loading.get(key);
+                if (current != null && current == loadGeneration) {
+                    loading.remove(key);
+                    if (value != null) {
+                        entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+                    }
+                } else if (value != null) {
+                    // Invalidated (or superseded by a newer load) while loading
+                    staleLoads.increment();
+                }
+            }
+        }
+        return value;
+    }
+
+    public V getIfPresent(K key) {
+        V value;
+        synchronized (entries) {
+            value = liveValue(key);
+        }
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+            loading.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            loading.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("staleLoadsDiscarded", staleLoads.sum());
+        stats.put("hitRate", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+
+    /** The entry's value unless it has expired (expired entries are dropped); caller holds the lock */
+    private V liveValue(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) return null;
+        if (ttlMs > 0 && System.currentTimeMillis() - entry.loadedAt() > ttlMs) {
+            entries.remove(key);
+            expirations.increment();
+            return null;
+        }
+        return entry.value();
+    }
+}
@@ -0,0 +1,157 @@
+package com.chatapp.cache;
+
+import com.chatapp.model.Group;
+import com.chatapp.repository.GroupMemberRepository;
+import com.chatapp.repository.GroupRepository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Caches group membership sets and group metadata used by authorization checks
+ * (history, member list, AI features, admin actions). Both change rarely, so
+ * every mutation in ChatService invalidates the affected group explicitly.
+ *
+ * Entries are always loaded from the primary. A lagging replica could hand back
+ * a member set from before the last change, and that set would then be served
+ * to every caller, not just the one whose request happened to be routed there.
+ */
+@Component
+public class GroupAccessCache {
+
+    /** The subset of a Group that authorization checks need. */
+    public record GroupMeta(Long groupId, Long createdBy, boolean isDirect, boolean aiEnabled) {}
+
+    private final GroupRepository groupRepository;
+    private final GroupMemberRepository groupMemberRepository;
+    private final TransactionTemplate primaryTx;
+
+    private final BoundedLruCache<Long, Set<Long>> members;
+    private final BoundedLruCache<Long, GroupMeta> groups;
+
+    public GroupAccessCache(GroupRepository groupRepository,
+                            GroupMemberRepository groupMemberRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${chatapp.cache.groups.max-entries:10000}") int maxEntries,
+                            @Value("${chatapp.cache.groups.ttl-ms:60000}") long ttlMs) {
+        this.groupRepository = groupRepository;
+        this.groupMemberRepository = groupMemberRepository;
+        // A new read-write transaction gets its own connection, which replica routing sends to the primary
+        this.primaryTx = new TransactionTemplate(transactionManager);
+        this.primaryTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // The TTL only bounds how long a missed invalidation can last; invalidation stays the main mechanism
+        this.members = new BoundedLruCache<>(maxEntries, ttlMs);
+        this.groups = new BoundedLruCache<>(maxEntries, ttlMs);
+    }
+
+    // ======================
+    // LOOKUPS
+    // ======================
+    public boolean isMember(Long groupId, Long userId) {
+        return getMemberIds(groupId).contains(userId);
+    }
+
+    public Set<Long> getMemberIds(Long groupId) {
+        return members.get(groupId, id -> onPrimary(() -> {
+            List<Long> userIds = groupMemberRepository.findUserIdsByGroupId(id);
+            return Set.copyOf(userIds);
+        }));
+    }
+
+    public Optional<GroupMeta> getGroupMeta(Long groupId) {
+        return Optional.ofNullable(groups.get(groupId, id -> onPrimary(() -> groupRepository.findById(id)
+                .map(GroupAccessCache::toMeta)
+                .orElse(null))));
+    }
+
+    public boolean isAdmin(Long groupId, Long userId) {
+        return getGroupMeta(groupId)
+                .map(meta -> meta.createdBy().equals(userId))
+                .orElse(false);
+    }
+
+    public boolean isAIEnabled(Long groupId) {
+        return getGroupMeta(groupId)
+                .map(GroupMeta::aiEnabled)
+                .orElse(false);
+    }
+
+    // ======================
+    // INVALIDATION
+    // ======================
+
+    /**
+     * Drop the cached member set for a group. When called inside a transaction the
+     * entry is dropped again after commit, so a concurrent reader cannot re-cache
+     * the pre-commit state.
+     */
+    public void invalidateMembers(Long groupId) {
+        members.invalidate(groupId);
+        afterCommit(() -> members.invalidate(groupId));
+    }
+
+    /**
+     * Drop both the metadata and the member set for a group
+     */
+    public void invalidateGroup(Long groupId) {
+        groups.invalidate(groupId);
+        members.invalidate(groupId);
+        afterCommit(() -> {
+            groups.invalidate(groupId);
+            members.invalidate(groupId);
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("members", members.stats());
+        stats.put("groups", groups.stats());
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private static GroupMeta toMeta(Group group) {
+        return new GroupMeta(
+                group.getGroupId(),
+                group.getCreatedBy(),
+                Boolean.TRUE.equals(group.getIsDirect()),
+                Boolean.TRUE.equals(group.getAiEnabled()));
+    }
+
+    /**
+     * Run a cache load on the primary. Inside a read-only transaction (whose
+     * connection may be a replica) it runs in a separate read-write one;
+     * otherwise the current connection already is the primary.
+     */
+    private <T> T onPrimary(Supplier<T> load) {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return load.get();
+        }
+        return primaryTx.execute(status -> load.get());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+}
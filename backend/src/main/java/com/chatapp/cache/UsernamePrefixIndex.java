@@ -0,0 +1,177 @@
+package com.chatapp.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory username index for autocomplete: a sorted array of lower-cased
+ * usernames, searched by binary search for the first entry with the prefix.
+ * Lookups never touch the database. New registrations are inserted directly;
+ * a periodic rebuild picks up users created elsewhere (imports, other nodes).
+ */
+@Component
+public class UsernamePrefixIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UsernamePrefixIndex.class);
+
+    /** An immutable sorted view; replaced as a whole on every change. */
+    private record Snapshot(String[] keys, String[] names, long[] userIds) {
+        static final Snapshot EMPTY = new Snapshot(new String[0], new String[0], new long[0]);
+    }
+
+    private record Entry(String key, String name, long userId) {}
+
+    private static final Comparator<Entry> ORDER =
+            Comparator.comparing(Entry::key).thenComparingLong(Entry::userId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean loaded = false;
+
+    // Registrations that arrive while a rebuild is reading the table; replayed onto its result
+    private final List<Entry> addedDuringRebuild = new ArrayList<>();
+    private boolean rebuilding = false;
+
+    public UsernamePrefixIndex(JdbcTemplate jdbcTemplate,
+                               @Value("${chatapp.users.autocomplete.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    /** False until the first load finished (or when disabled); callers then query the database. */
+    public boolean isReady() {
+        return enabled && loaded;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${chatapp.users.autocomplete.refresh-ms:300000}",
+               initialDelayString = "${chatapp.users.autocomplete.refresh-ms:300000}")
+    public void rebuild() {
+        if (!enabled) return;
+        synchronized (this) {
+            rebuilding = true;
+            addedDuringRebuild.clear();
+        }
+        try {
+            List<Entry> entries = new ArrayList<>();
+            jdbcTemplate.query("SELECT user_id, username FROM users", rs -> {
+                String name = rs.getString("username");
+                entries.add(new Entry(key(name), name, rs.getLong("user_id")));
+            });
+            entries.sort(ORDER);
+
+            String[] keys = new String[entries.size()];
+            String[] names = new String[entries.size()];
+            long[] ids = new long[entries.size()];
+            for (int i = 0; i < keys.length; i++) {
+                Entry e = entries.get(i);
+                keys[i] = e.key();
+                names[i] = e.name();
+                ids[i] = e.userId();
+            }
+            synchronized (this) {
+                snapshot = new Snapshot(keys, names, ids);
+                addedDuringRebuild.forEach(this::insert);
+                loaded = true;
+            }
+        } catch (Exception e) {
+            log.warn("Username index rebuild failed", e);
+        } finally {
+            synchronized (this) {
+                rebuilding = false;
+                addedDuringRebuild.clear();
+            }
+        }
+    }
+
+    /** Insert a freshly registered user (copy-on-write, so readers never lock). */
+    public synchronized void add(Long userId, String username) {
+        if (!enabled || userId == null || username == null) return;
+
+        Entry entry = new Entry(key(username), username, userId);
+        if (rebuilding) addedDuringRebuild.add(entry);
+        insert(entry);
+    }
+
+    /** Up to {@code limit} users whose username starts with the prefix (case-insensitive). */
+    public List<Map<String, Object>> complete(String prefix, int limit) {
+        Snapshot s = snapshot;
+        String p = key(prefix);
+        List<Map<String, Object>> result = new ArrayList<>();
+
+        int i = Arrays.binarySearch(s.keys(), p);
+        if (i < 0) i = -i - 1;
+        // binarySearch may land on any of several equal keys; back up to the first
+        while (i > 0 && s.keys()[i - 1].equals(p)) i--;
+
+        for (; i < s.keys().length && result.size() < limit && s.keys()[i].startsWith(p); i++) {
+            Map<String, Object> user = new HashMap<>();
+            user.put("user_id", s.userIds()[i]);
+            user.put("username", s.names()[i]);
+            result.add(user);
+        }
+        return result;
+    }
+
+    public int size() {
+        return snapshot.keys().length;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    // Must hold the monitor
+    private void insert(Entry entry) {
+        Snapshot s = snapshot;
+        int pos = insertionPoint(s, entry);
+        int n = s.keys().length;
+        if (pos < n && s.userIds()[pos] == entry.userId() && s.keys()[pos].equals(entry.key())) {
+            return; // already present
+        }
+
+        String[] keys = new String[n + 1];
+        String[] names = new String[n + 1];
+        long[] ids = new long[n + 1];
+        System.arraycopy(s.keys(), 0, keys, 0, pos);
+        System.arraycopy(s.names(), 0, names, 0, pos);
+        System.arraycopy(s.userIds(), 0, ids, 0, pos);
+        keys[pos] = entry.key();
+        names[pos] = entry.name();
+        ids[pos] = entry.userId();
+        System.arraycopy(s.keys(), pos, keys, pos + 1, n - pos);
+        System.arraycopy(s.names(), pos, names, pos + 1, n - pos);
+        System.arraycopy(s.userIds(), pos, ids, pos + 1, n - pos);
+        snapshot = new Snapshot(keys, names, ids);
+    }
+
+    private static int insertionPoint(Snapshot s, Entry entry) {
+        int lo = 0, hi = s.keys().length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = s.keys()[mid].compareTo(entry.key());
+            if (cmp == 0) cmp = Long.compare(s.userIds()[mid], entry.userId());
+            if (cmp < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,49 @@
+package com.chatapp.cache;
+
+import com.chatapp.security.AuthenticatedUser;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Tokens that already passed signature and expiry checks, keyed by the
+ * token's SHA-256 hash (JwtService.tokenHash; raw tokens are never kept). An entry is only served
+ * until the token's own exp, so a hit is exactly as valid as re-verifying.
+ * Shared by the REST filter and the WebSocket handshake through JwtService.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private record Entry(AuthenticatedUser user, long expiresAtMillis) {}
+
+    private final BoundedLruCache<String, Entry> entries;
+
+    public VerifiedTokenCache(@Value("${chatapp.cache.tokens.max-entries:50000}") int maxEntries) {
+        this.entries = new BoundedLruCache<>(maxEntries);
+    }
+
+    /** The cached principal, or null when unknown or past its expiry */
+    public AuthenticatedUser get(String tokenHash) {
+        Entry entry = entries.getIfPresent(tokenHash);
+        if (entry == null) return null;
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            entries.invalidate(tokenHash);
+            return null;
+        }
+        return entry.user();
+    }
+
+    public void put(String tokenHash, AuthenticatedUser user, long expiresAtMillis) {
+        entries.put(tokenHash, new Entry(user, expiresAtMillis));
+    }
+
+    public void evict(String tokenHash) {
+        entries.invalidate(tokenHash);
+    }
+
+    public Map<String, Object> stats() {
+        return entries.stats();
+    }
+}
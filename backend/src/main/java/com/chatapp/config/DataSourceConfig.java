@@ -0,0 +1,85 @@
+package com.chatapp.config;
+
+import com.chatapp.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-replica routing, active only when chatapp.datasource.replica.urls is set.
+ * Without it Spring Boot's single auto-configured pool is used as before.
+ *
+ * The application DataSource is a lazy proxy over the primary pool: the real
+ * connection is fetched at the first statement, by which point the transaction
+ * has marked it read-only, and read-only connections are taken from the
+ * replica router instead.
+ */
+@Configuration
+@ConditionalOnExpression("!'${chatapp.datasource.replica.urls:}'.isBlank()")
+public class DataSourceConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourceConfig.class);
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            @Value("${chatapp.datasource.replica.urls}") String urls,
+            @Value("${chatapp.datasource.replica.username:}") String username,
+            @Value("${chatapp.datasource.replica.password:}") String password,
+            @Value("${chatapp.datasource.replica.pool-size:10}") int poolSize,
+            @Value("${chatapp.datasource.replica.max-lag-ms:2000}") long maxLagMs,
+            @Value("${chatapp.datasource.replica.lag-check-interval-ms:1000}") long lagCheckIntervalMs,
+            @Value("${chatapp.datasource.replica.stale-after-checks:3}") int staleAfterChecks) {
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        int i = 0;
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) continue;
+            String name = "replica-" + (++i);
+
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName(name);
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username.isBlank() ? properties.determineUsername() : username);
+            replica.setPassword(password.isBlank() ? properties.determinePassword() : password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            // A replica that is down at startup just stays out of rotation
+            replica.setInitializationFailTimeout(-1);
+            replicas.put(name, replica);
+        }
+
+        log.info("Read replica routing enabled for {}", replicas.keySet());
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLagMs,
+                lagCheckIntervalMs * staleAfterChecks);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primaryDataSource);
+        proxy.setReadOnlyDataSource(replicaRoutingDataSource);
+        return proxy;
+    }
+}
@@ -1,21 +1,28 @@
 package com.chatapp.config;
 
+import com.chatapp.datasource.ReadYourWrites;
+import com.chatapp.exception.RateLimitedException;
+import com.chatapp.security.AuthenticatedUser;
+import com.chatapp.security.UploadThrottle;
 import com.chatapp.service.JwtService;
-import com.chatapp.repository.UserRepository;
-import com.chatapp.repository.SessionRepository;
-import com.chatapp.model.User;
 
 import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
 import jakarta.servlet.http.HttpServletResponse;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -24,28 +31,50 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    /**
+     * Endpoints reachable without a token. Used for both the authorization
+     * rules and the JWT filter's bypass, so the two cannot drift apart.
+     */
+    static final String[] PUBLIC_ENDPOINTS = {
+            "/api/auth/register",
+            "/api/auth/login",
+            "/api/keys/user/**",
+            "/ws/**",
+            "/network/qr",
+            "/network/ip",
+            "/api/mdns",
+            "/api/users/usernames",
+            "/api/users/search",
+            "/api/health",
+            "/api/test/**"
+    };
+
     private final JwtService jwtService;
-    private final UserRepository userRepository;
-    private final SessionRepository sessionRepository;
+    private final ReadYourWrites readYourWrites;
+    private final UploadThrottle uploadThrottle;
 
     // Inject HOST_IP from docker-compose.yml
     @Value("${HOST_IP:localhost}")
     private String hostIp;
 
-    public SecurityConfig(JwtService jwtService,
-            UserRepository userRepository,
-            SessionRepository sessionRepository) {
+    @Value("${chatapp.media.admission.drain-max-bytes:8388608}")
+    private long admissionDrainMaxBytes;
+
+    public SecurityConfig(JwtService jwtService, ReadYourWrites readYourWrites, UploadThrottle uploadThrottle) {
         this.jwtService = jwtService;
-        this.userRepository = userRepository;
-        this.sessionRepository = sessionRepository;
+        this.readYourWrites = readYourWrites;
+        this.uploadThrottle = uploadThrottle;
     }
 
     @Bean
@@ -54,22 +83,12 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers(
-                                "/api/auth/register",
-                                "/api/auth/login",
-                                "/api/keys/user/**",
-                                "/ws/**",
-                                "/network/qr",
-                                "/network/ip",
-                                "/api/mdns",
-                                "/api/users/usernames",
-                                "/api/users/search",
-                                "/api/health",
-                                "/api/test/**")
+                        .requestMatchers(PUBLIC_ENDPOINTS)
                         .permitAll()
                         .anyRequest().authenticated())
-                .addFilterBefore(new JwtAuthFilter(jwtService, userRepository, sessionRepository),
-                        UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(new JwtAuthFilter(jwtService, readYourWrites),
+                        UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(new UploadAdmissionFilter(uploadThrottle, admissionDrainMaxBytes), JwtAuthFilter.class);
 
         return http.build();
     }
@@ -92,7 +111,7 @@ public class SecurityConfig {
         configuration.setAllowCredentials(true);
 
         // Expose headers that frontend might need
-        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "Retry-After"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
@@ -103,14 +122,17 @@ public class SecurityConfig {
     // JWT Authentication Filter
     // ========================
     static class JwtAuthFilter extends org.springframework.web.filter.OncePerRequestFilter {
+        private static final Logger log = LoggerFactory.getLogger(JwtAuthFilter.class);
+        private static final PublicEndpointMatcher PUBLIC = new PublicEndpointMatcher(PUBLIC_ENDPOINTS);
+        private static final List<SimpleGrantedAuthority> USER_AUTHORITIES =
+                List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
         private final JwtService jwtService;
-        private final UserRepository userRepository;
-        private final SessionRepository sessionRepository;
+        private final ReadYourWrites readYourWrites;
 
-        JwtAuthFilter(JwtService jwtService, UserRepository userRepository, SessionRepository sessionRepository) {
+        JwtAuthFilter(JwtService jwtService, ReadYourWrites readYourWrites) {
             this.jwtService = jwtService;
-            this.userRepository = userRepository;
-            this.sessionRepository = sessionRepository;
+            this.readYourWrites = readYourWrites;
         }
 
         @Override
@@ -119,104 +141,214 @@ public class SecurityConfig {
                 FilterChain filterChain) throws ServletException, IOException {
             String requestURI = request.getRequestURI();
 
-            // Log the request URI for debugging
-            System.out.println("JwtAuthFilter: Processing request for URI: " + requestURI);
-
-            // Define public endpoints that should bypass JWT authentication
-            List<String> publicEndpoints = Arrays.asList(
-                    "/api/auth/register",
-                    "/api/auth/login",
-                    "/api/keys/user/**",
-                    "/ws/**",
-                    "/network/qr",
-                    "/network/ip",
-                    "/api/mdns",
-                    "/api/users/usernames",
-                    "/api/users/search",
-                    "/api/health");
-
-            // Check if this is a public endpoint
-            boolean isPublicEndpoint = false;
-            for (String pattern : publicEndpoints) {
-                if (pattern.equals(requestURI) ||
-                        (pattern.endsWith("/**") && requestURI.startsWith(pattern.substring(0, pattern.length() - 3)))
-                        ||
-                        requestURI.startsWith("/api/auth/")) {
-                    isPublicEndpoint = true;
-                    break;
+            // Public endpoints pass through without JWT validation
+            if (PUBLIC.matches(requestURI)) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+
+            // Token from the Authorization header, else from the query string (media links, downloads)
+            String authHeader = request.getHeader("Authorization");
+            String token = authHeader != null && authHeader.startsWith("Bearer ")
+                    ? authHeader.substring(7)
+                    : request.getParameter("token");
+
+            if (token != null) {
+                AuthenticatedUser principal = null;
+                try {
+                    // Single verification; userId, email and username come from the claims
+                    principal = jwtService.verify(token);
+                } catch (Exception e) {
+                    log.debug("Token rejected for {}: {}", requestURI, e.getMessage());
+                }
+
+                if (principal != null) {
+                    SecurityContextHolder.getContext().setAuthentication(
+                            new UsernamePasswordAuthenticationToken(principal, null, USER_AUTHORITIES));
+
+                    // Reads of a user who just wrote must not be served by a lagging replica
+                    boolean writeRequest = isWriteMethod(request.getMethod());
+                    if (writeRequest || readYourWrites.wroteRecently(principal.userId())) {
+                        ReadYourWrites.pinToPrimary();
+                    }
+                    try {
+                        filterChain.doFilter(request, response);
+                    } finally {
+                        ReadYourWrites.clear();
+                        if (writeRequest) {
+                            readYourWrites.recordWrite(principal.userId());
+                        }
+                    }
+                    return;
                 }
             }
 
-            // If it's a public endpoint, let it pass through without JWT validation
-            if (isPublicEndpoint) {
-                System.out.println("JwtAuthFilter: Public endpoint, bypassing JWT validation");
+            // Not public and no valid token
+            log.debug("Unauthenticated request to {}", requestURI);
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized");
+        }
+
+        private static boolean isWriteMethod(String method) {
+            return !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method));
+        }
+    }
+
+    // ========================
+    // Upload Admission Filter
+    // ========================
+    /**
+     * Runs after authentication and turns away uploads over the concurrency
+     * or bandwidth limits with a 429 + Retry-After instead of letting them
+     * queue on servlet threads and disk.
+     *
+     * A client that is already sending the body must still be able to read the
+     * 429. If nothing consumes the body, Tomcat resets the connection once more
+     * than its max-swallow-size is left unread. So the filter either reads and
+     * discards bodies up to drain-max-bytes (which covers the web client's
+     * chunks and small streaming uploads), or answers with Connection: close.
+     * Clients that sent Expect: 100-continue get the 429 before any body is
+     * sent, because Tomcat only sends 100 Continue once the body is read.
+     */
+    static class UploadAdmissionFilter extends org.springframework.web.filter.OncePerRequestFilter {
+        private final UploadThrottle uploadThrottle;
+        private final long drainMaxBytes;
+
+        UploadAdmissionFilter(UploadThrottle uploadThrottle, long drainMaxBytes) {
+            this.uploadThrottle = uploadThrottle;
+            this.drainMaxBytes = drainMaxBytes;
+        }
+
+        @Override
+        protected boolean shouldNotFilter(HttpServletRequest request) {
+            String uri = request.getRequestURI();
+            return switch (request.getMethod()) {
+                case "POST" -> !(uri.startsWith("/media/upload/") || uri.startsWith("/media/upload-stream/"));
+                case "PUT" -> !(uri.startsWith("/media/uploads/") && uri.contains("/chunks/"));
+                default -> true;
+            };
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request,
+                HttpServletResponse response,
+                FilterChain filterChain) throws ServletException, IOException {
+            var authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser user)) {
                 filterChain.doFilter(request, response);
                 return;
             }
 
-            // For non-public endpoints, check authentication
-            String authHeader = request.getHeader("Authorization");
-            String token = null;
-
-            // Try to extract from header first
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                token = authHeader.substring(7);
-                System.out.println("JwtAuthFilter: Found token in Authorization header");
-            } else if (request.getParameter("token") != null) {
-                token = request.getParameter("token");
-                System.out.println("JwtAuthFilter: Found token in query parameter");
+            long declared = request.getContentLengthLong();
+            UploadThrottle.Permit permit;
+            try {
+                permit = uploadThrottle.admit(user.userId(), declared);
+            } catch (RateLimitedException e) {
+                boolean expectsContinue = "100-continue".equalsIgnoreCase(request.getHeader("Expect"));
+                if (!expectsContinue && declared >= 0 && declared <= drainMaxBytes) {
+                    try (InputStream body = request.getInputStream()) {
+                        body.transferTo(OutputStream.nullOutputStream());
+                    }
+                } else {
+                    // The unread body (if any) is not worth reading; end the connection after the 429
+                    response.setHeader("Connection", "close");
+                }
+                response.setStatus(429);
+                response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+                response.setContentType("application/json");
+                response.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+                return;
+            }
+
+            // Without a Content-Length the budget is charged with what was actually read
+            CountingRequest counted = declared < 0 ? new CountingRequest(request) : null;
+            try {
+                filterChain.doFilter(counted != null ? counted : request, response);
+            } finally {
+                if (counted != null) permit.chargeActual(counted.bytesRead);
+                permit.close();
             }
+        }
+    }
 
-            System.out.println("JwtAuthFilter: Auth header: " + authHeader);
-            System.out.println("JwtAuthFilter: Final token used: " + token);
+    /** Counts body bytes read through getInputStream */
+    static final class CountingRequest extends HttpServletRequestWrapper {
+        long bytesRead;
+        private ServletInputStream stream;
 
-            if (token != null) {
-                System.out.println("JwtAuthFilter: Processing token: " + token);
+        CountingRequest(HttpServletRequest request) {
+            super(request);
+        }
 
-                try {
-                    // Extract email from token
-                    String email = jwtService.extractEmail(token);
-                    System.out.println("JwtAuthFilter: Extracted email: " + email);
-
-                    // Find user by email
-                    Optional<User> userOpt = userRepository.findByEmail(email);
-
-                    if (userOpt.isPresent()) {
-                        User user = userOpt.get();
-
-                        // Validate token for this user
-                        if (jwtService.validateToken(token, user)) {
-                            org.springframework.security.core.userdetails.UserDetails userDetails = org.springframework.security.core.userdetails.User
-                                    .withUsername(user.getEmail())
-                                    .password("")
-                                    .authorities("ROLE_USER")
-                                    .build();
-
-                            UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                                    userDetails, null, userDetails.getAuthorities());
-
-                            SecurityContextHolder.getContext().setAuthentication(authToken);
-                            System.out.println("JwtAuthFilter: Authentication successful, continuing filter chain");
-                            filterChain.doFilter(request, response);
-                            return;
-                        } else {
-                            System.out.println("JwtAuthFilter: Token validation failed for user: " + email);
-                        }
-                    } else {
-                        System.out.println("JwtAuthFilter: User not found for email: " + email);
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null) {
+                ServletInputStream in = super.getInputStream();
+                stream = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = in.read();
+                        if (b >= 0) bytesRead++;
+                        return b;
                     }
-                } catch (Exception e) {
-                    System.out.println("JwtAuthFilter: Exception during token validation: " + e.getMessage());
-                    e.printStackTrace();
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = in.read(b, off, len);
+                        if (n > 0) bytesRead += n;
+                        return n;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return in.isFinished();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return in.isReady();
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        in.setReadListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+    }
+
+    /**
+     * Matches the public endpoint patterns without allocating per request:
+     * exact paths are a set lookup, "/x/**" patterns a prefix check (which,
+     * as in Spring's matcher, also covers "/x" itself).
+     */
+    static final class PublicEndpointMatcher {
+        private final Set<String> exact;
+        private final String[] prefixes;   // "/x/"
+        private final Set<String> prefixRoots; // "/x"
+
+        PublicEndpointMatcher(String[] patterns) {
+            List<String> exactPaths = new ArrayList<>();
+            List<String> prefixPaths = new ArrayList<>();
+            for (String pattern : patterns) {
+                if (pattern.endsWith("/**")) {
+                    prefixPaths.add(pattern.substring(0, pattern.length() - 3));
+                } else {
+                    exactPaths.add(pattern);
                 }
             }
+            this.exact = Set.copyOf(exactPaths);
+            this.prefixRoots = Set.copyOf(prefixPaths);
+            this.prefixes = prefixPaths.stream().map(root -> root + "/").toArray(String[]::new);
+        }
 
-            // If we reach here, it means:
-            // 1. This is not a public endpoint
-            // 2. No valid authentication was provided
-            // So we should return 401 Unauthorized
-            System.out.println("JwtAuthFilter: No valid authentication, returning 401");
-            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized");
+        boolean matches(String uri) {
+            if (exact.contains(uri) || prefixRoots.contains(uri)) return true;
+            for (String prefix : prefixes) {
+                if (uri.startsWith(prefix)) return true;
+            }
+            return false;
         }
     }
-}
\ No newline at end of file
+}
@@ -2,10 +2,13 @@ package com.chatapp.config;
 
 import com.chatapp.websocket.ChatWebSocketHandler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
 @Configuration
 @EnableWebSocket
@@ -14,9 +17,20 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Autowired
     private ChatWebSocketHandler chatWebSocketHandler;
 
+    @Value("${chatapp.ws.inline-media.max-bytes:262144}")
+    private int inlineMediaMaxBytes;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(chatWebSocketHandler, "/ws/messages")
                 .setAllowedOrigins("*"); // For LAN, allow all origins
     }
+
+    // Binary frames carry small attachments inline: room for the largest one plus its header
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(inlineMediaMaxBytes + 4 + ChatWebSocketHandler.INLINE_HEADER_MAX_BYTES);
+        return container;
+    }
 }
@@ -1,7 +1,6 @@
 package com.chatapp.controller;
 
 import com.chatapp.dto.ai.*;
-import com.chatapp.service.JwtService;
 import com.chatapp.service.ai.AIServiceGateway;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -16,20 +15,13 @@ public class AIController {
     @Autowired
     private AIServiceGateway aiServiceGateway;
 
-    @Autowired
-    private JwtService jwtService;
-
     /**
      * Translate text for a group
      */
     @PostMapping("/translate")
     public ResponseEntity<?> translate(
-            @RequestHeader("Authorization") String authHeader,
             @RequestBody Map<String, Object> payload) {
         try {
-            // Validate user
-            extractUserIdFromHeader(authHeader);
-
             // Extract groupId and text
             Long groupId = Long.valueOf(payload.get("group_id").toString());
             String text = payload.get("text").toString();
@@ -62,12 +54,9 @@ public class AIController {
      */
     @PostMapping("/summarize")
     public ResponseEntity<?> summarize(
-            @RequestHeader("Authorization") String authHeader,
             @RequestBody SummarizerRequest request,
             @RequestParam Long groupId) {
         try {
-            extractUserIdFromHeader(authHeader);
-
             if (!aiServiceGateway.isAIEnabled(groupId)) {
                 return ResponseEntity.status(403)
                         .body(Map.of("error", "AI features are disabled for this group"));
@@ -89,11 +78,8 @@ public class AIController {
      */
     @PostMapping("/check-toxicity")
     public ResponseEntity<?> checkToxicity(
-            @RequestHeader("Authorization") String authHeader,
             @RequestBody Map<String, Object> payload) {
         try {
-            extractUserIdFromHeader(authHeader);
-
             Long groupId = Long.valueOf(payload.get("group_id").toString());
             String text = payload.get("text").toString();
 
@@ -120,12 +106,9 @@ public class AIController {
      */
     @PostMapping("/extract-deadlines")
     public ResponseEntity<?> extractDeadlines(
-            @RequestHeader("Authorization") String authHeader,
             @RequestBody DeadlineRequest request,
             @RequestParam Long groupId) {
         try {
-            extractUserIdFromHeader(authHeader);
-
             if (!aiServiceGateway.isAIEnabled(groupId)) {
                 return ResponseEntity.status(403)
                         .body(Map.of("error", "AI features are disabled for this group"));
@@ -147,12 +130,9 @@ public class AIController {
      */
     @PostMapping("/smart-reply")
     public ResponseEntity<?> generateSmartReplies(
-            @RequestHeader("Authorization") String authHeader,
             @RequestBody SmartReplyRequest request,
             @RequestParam Long groupId) {
         try {
-            extractUserIdFromHeader(authHeader);
-
             if (!aiServiceGateway.isAIEnabled(groupId)) {
                 return ResponseEntity.status(403)
                         .body(Map.of("error", "AI features are disabled for this group"));
@@ -168,13 +148,4 @@ public class AIController {
                     .body(Map.of("error", "Unauthorized"));
         }
     }
-
-    // Helper method
-    private Long extractUserIdFromHeader(String authHeader) throws Exception {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new Exception("Invalid header");
-        }
-        String token = authHeader.substring(7);
-        return jwtService.validateTokenAndGetUserId(token);
-    }
 }
\ No newline at end of file
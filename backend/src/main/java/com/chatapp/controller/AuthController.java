@@ -1,7 +1,11 @@
 package com.chatapp.controller;
 
+import com.chatapp.exception.RateLimitedException;
 import com.chatapp.model.User;
+import com.chatapp.security.ClientAddressResolver;
 import com.chatapp.service.AuthService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.chatapp.websocket.ChatWebSocketHandler;
@@ -14,10 +18,13 @@ public class AuthController {
 
     private final AuthService authService;
     private final ChatWebSocketHandler chatWebSocketHandler;
+    private final ClientAddressResolver clientAddressResolver;
 
-    public AuthController(AuthService authService, ChatWebSocketHandler chatWebSocketHandler) {
+    public AuthController(AuthService authService, ChatWebSocketHandler chatWebSocketHandler,
+                          ClientAddressResolver clientAddressResolver) {
         this.authService = authService;
         this.chatWebSocketHandler = chatWebSocketHandler;
+        this.clientAddressResolver = clientAddressResolver;
     }
 
 
@@ -25,19 +32,22 @@ public class AuthController {
     // REGISTER
     // ======================
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody Map<String, String> body) {
+    public ResponseEntity<?> register(@RequestBody Map<String, String> body, HttpServletRequest request) {
         try {
             String username = body.get("username");
             String email = body.get("email");
             String password = body.get("password");
 
-            User user = authService.register(username, email, password);
+            User user = authService.register(username, email, password,
+                    clientAddressResolver.clientAddress(request));
             return ResponseEntity.status(201).body(Map.of(
                 "userId", user.getUserId(),
                 "username", user.getUsername(),
                 "email", user.getEmail(),
                 "createdAt", user.getCreatedAt()
             ));
+        } catch (RateLimitedException e) {
+            return tooManyRequests(e);
         } catch (RuntimeException e) {
             return ResponseEntity.status(400).body(Map.of(
                 "error", e.getMessage()
@@ -53,17 +63,19 @@ public class AuthController {
     // LOGIN
     // ======================
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> body) {
+    public ResponseEntity<?> login(@RequestBody Map<String, String> body, HttpServletRequest request) {
         try {
             String email = body.get("email");
             String password = body.get("password");
 
-            String token = authService.login(email, password);
+            String token = authService.login(email, password, clientAddressResolver.clientAddress(request));
 
             return ResponseEntity.ok(Map.of(
                 "message", "Login successful",
                 "token", token
             ));
+        } catch (RateLimitedException e) {
+            return tooManyRequests(e);
         } catch (RuntimeException e) {
             return ResponseEntity.status(401).body(Map.of(
                 "error", e.getMessage()
@@ -105,4 +117,13 @@ public class AuthController {
             ));
         }
     }
-}
\ No newline at end of file
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private ResponseEntity<?> tooManyRequests(RateLimitedException e) {
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage()));
+    }
+}
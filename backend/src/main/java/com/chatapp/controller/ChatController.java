@@ -1,5 +1,6 @@
 package com.chatapp.controller;
 
+import com.chatapp.cache.GroupAccessCache;
 import com.chatapp.dto.MessageDTO;
 import com.chatapp.model.Group;
 import com.chatapp.model.GroupMember;
@@ -9,11 +10,17 @@ import com.chatapp.repository.GroupMemberRepository;
 import com.chatapp.repository.GroupRepository;
 import com.chatapp.repository.MessageRepository;
 import com.chatapp.repository.UserRepository;
+import com.chatapp.security.AuthenticatedUser;
 import com.chatapp.service.ChatService;
-import com.chatapp.service.JwtService;
+import com.chatapp.service.HistoryExportService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -25,9 +32,6 @@ import org.springframework.data.domain.Pageable;
 @RequestMapping("/api")
 public class ChatController {
 
-    @Autowired
-    private JwtService jwtService;
-
     @Autowired
     private GroupRepository groupRepository;
 
@@ -43,16 +47,20 @@ public class ChatController {
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    private GroupAccessCache groupAccessCache;
+
+    @Autowired
+    private HistoryExportService historyExportService;
+
     // User leaves group
     @DeleteMapping("group/{groupId}/leave")
     public ResponseEntity<?> leaveGroup(
             @PathVariable Long groupId,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtService.validateTokenAndGetUserId(token);
+            Long userId = currentUser.userId();
 
             // Call ChatService
             chatService.leaveGroup(userId, groupId);
@@ -67,18 +75,16 @@ public class ChatController {
     @DeleteMapping("group/{groupId}")
     public ResponseEntity<?> deleteGroup(
             @PathVariable Long groupId,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtService.validateTokenAndGetUserId(token);
+            Long userId = currentUser.userId();
 
             // Check if user is admin of the group
-            Group group = groupRepository.findById(groupId)
+            GroupAccessCache.GroupMeta group = groupAccessCache.getGroupMeta(groupId)
                     .orElseThrow(() -> new RuntimeException("Group not found"));
             
-            if (!group.getCreatedBy().equals(userId)) {
+            if (!group.createdBy().equals(userId)) {
                 return ResponseEntity.status(403).body(Map.of("error", "Only group admin can delete the group"));
             }
 
@@ -113,15 +119,16 @@ public class ChatController {
     // Fetch message history
     // -----------------------------
     @GetMapping("/groups/{groupId}/messages")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getGroupMessages(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
             @PathVariable Long groupId,
             @RequestParam(defaultValue = "50") int limit,
             @RequestParam(defaultValue = "0") int offset) {
         try {
-            Long userId = extractUserIdFromHeader(authHeader);
+            Long userId = currentUser.userId();
 
-            boolean member = groupMemberRepository.existsByGroupIdAndUserId(groupId, userId);
+            boolean member = groupAccessCache.isMember(groupId, userId);
             if (!member) {
                 return errorResponse("User not in group", 403);
             }
@@ -143,15 +150,41 @@ public class ChatController {
         }
     }
 
+    // -----------------------------
+    // Export full message history (NDJSON, streamed)
+    // -----------------------------
+    @GetMapping("/groups/{groupId}/export")
+    public ResponseEntity<?> exportGroupMessages(
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
+            @PathVariable Long groupId) {
+        try {
+            Long userId = currentUser.userId();
+
+            if (!groupAccessCache.isMember(groupId, userId)) {
+                return errorResponse("User not in group", 403);
+            }
+
+            StreamingResponseBody body = out -> historyExportService.exportGroupHistory(groupId, out);
+
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"group-" + groupId + "-history.ndjson\"")
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(body);
+        } catch (Exception e) {
+            return errorResponse("Unauthorized or invalid token", 401);
+        }
+    }
+
     // -----------------------------
     // Create group
     // -----------------------------
     @PostMapping("/group/create")
     public ResponseEntity<?> createGroup(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
             @RequestBody Map<String, Object> body) {
         try {
-            Long creatorId = extractUserIdFromHeader(authHeader);
+            Long creatorId = currentUser.userId();
             String groupName = (String) body.getOrDefault("group_name", "New Group");
             
             // Get AI enabled setting from request (default false)
@@ -199,12 +232,15 @@ public class ChatController {
 
             groupRepository.save(group);
 
+            List<GroupMember> members = new ArrayList<>();
             for (Long uid : memberIds) {
                 GroupMember gm = new GroupMember();
                 gm.setGroupId(group.getGroupId());
                 gm.setUserId(uid);
-                groupMemberRepository.save(gm);
+                members.add(gm);
             }
+            groupMemberRepository.saveAll(members);
+            groupAccessCache.invalidateGroup(group.getGroupId());
 
             return ResponseEntity.ok(Map.of(
                     "group_id", group.getGroupId(),
@@ -273,12 +309,12 @@ public class ChatController {
         GroupMember gm1 = new GroupMember();
         gm1.setGroupId(group.getGroupId());
         gm1.setUserId(user1Id);
-        groupMemberRepository.save(gm1);
 
         GroupMember gm2 = new GroupMember();
         gm2.setGroupId(group.getGroupId());
         gm2.setUserId(user2Id);
-        groupMemberRepository.save(gm2);
+        groupMemberRepository.saveAll(List.of(gm1, gm2));
+        groupAccessCache.invalidateGroup(group.getGroupId());
 
         return Optional.of(group);
     }
@@ -287,9 +323,10 @@ public class ChatController {
     // Fetch user groups
     // -----------------------------
     @GetMapping("/groups")
-    public ResponseEntity<?> getUserGroups(@RequestHeader("Authorization") String authHeader) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getUserGroups(@AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long userId = extractUserIdFromHeader(authHeader);
+            Long userId = currentUser.userId();
             System.out.println("Fetching groups for user ID: " + userId);
 
             List<GroupMember> memberships = groupMemberRepository.findByUserId(userId);
@@ -327,13 +364,14 @@ public class ChatController {
     // Fetch group members
     // -----------------------------
     @GetMapping("/groups/{groupId}/members")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getGroupMembers(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
             @PathVariable Long groupId) {
         try {
-            Long userId = extractUserIdFromHeader(authHeader);
+            Long userId = currentUser.userId();
 
-            boolean member = groupMemberRepository.existsByGroupIdAndUserId(groupId, userId);
+            boolean member = groupAccessCache.isMember(groupId, userId);
             if (!member)
                 return errorResponse("User not in group", 403);
 
@@ -365,29 +403,29 @@ public class ChatController {
     // -----------------------------
 @GetMapping("/group/{groupId}/ai-status")
 public ResponseEntity<?> getAIStatus(
-        @RequestHeader("Authorization") String authHeader,
+        @AuthenticationPrincipal AuthenticatedUser currentUser,
         @PathVariable Long groupId) {
     try {
-        Long userId = extractUserIdFromHeader(authHeader);
+        Long userId = currentUser.userId();
 
         // Verify user is a member of the group
-        boolean member = groupMemberRepository.existsByGroupIdAndUserId(groupId, userId);
+        boolean member = groupAccessCache.isMember(groupId, userId);
         if (!member) {
             return errorResponse("User not in group", 403);
         }
 
         // Get group
-        Optional<Group> groupOpt = groupRepository.findById(groupId);
+        Optional<GroupAccessCache.GroupMeta> groupOpt = groupAccessCache.getGroupMeta(groupId);
         if (groupOpt.isEmpty()) {
             return errorResponse("Group not found", 404);
         }
 
-        Group group = groupOpt.get();
+        GroupAccessCache.GroupMeta group = groupOpt.get();
 
         return ResponseEntity.ok(Map.of(
                 "group_id", groupId,
-                "ai_enabled", group.getAiEnabled(),
-                "message", "AI features are " + (group.getAiEnabled() ? "enabled" : "disabled") + " for this group"));
+                "ai_enabled", group.aiEnabled(),
+                "message", "AI features are " + (group.aiEnabled() ? "enabled" : "disabled") + " for this group"));
     } catch (Exception e) {
         return errorResponse("Unauthorized or invalid token", 401);
     }
@@ -397,10 +435,11 @@ public ResponseEntity<?> getAIStatus(
     // Fetch dashboard statistics
     // -----------------------------
     @GetMapping("/dashboard/stats")
-    public ResponseEntity<?> getDashboardStats(@RequestHeader("Authorization") String authHeader) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getDashboardStats(@AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
             System.out.println("Dashboard stats request received");
-            Long userId = extractUserIdFromHeader(authHeader);
+            Long userId = currentUser.userId();
             System.out.println("User ID extracted: " + userId);
 
             // Get total groups for the user (excluding groups with 2 or fewer members)
@@ -447,14 +486,6 @@ public ResponseEntity<?> getAIStatus(
     // -----------------------------
     // Helpers
     // -----------------------------
-    private Long extractUserIdFromHeader(String authHeader) throws Exception {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new Exception("Invalid header");
-        }
-        String token = authHeader.substring(7);
-        return jwtService.validateTokenAndGetUserId(token);
-    }
-
     private ResponseEntity<Map<String, Object>> errorResponse(String message, int code) {
         return ResponseEntity.status(code).body(Map.of(
                 "error", message,
@@ -0,0 +1,107 @@
+package com.chatapp.controller;
+
+import com.chatapp.model.ImportJob;
+import com.chatapp.service.importer.HistoryImportService;
+import com.chatapp.service.importer.HistoryImportService.ImportResult;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/admin/import")
+public class ImportController {
+
+    private final HistoryImportService historyImportService;
+
+    // Comma-separated emails allowed to run imports
+    @Value("${chatapp.admin.emails:}")
+    private List<String> adminEmails;
+
+    public ImportController(HistoryImportService historyImportService) {
+        this.historyImportService = historyImportService;
+    }
+
+    // ======================
+    // START / RESUME IMPORT
+    // Body is the raw archive (NDJSON or CSV), streamed, never buffered whole.
+    // ======================
+    @PostMapping("/{target}")
+    public ResponseEntity<?> importArchive(
+            @PathVariable String target,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) Long jobId,
+            HttpServletRequest request) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("error", "Admin access required"));
+        }
+
+        try {
+            ImportResult result = historyImportService.runImport(
+                    target, format.toLowerCase(Locale.ROOT), source, jobId, request.getInputStream());
+
+            Map<String, Object> body = toMap(result.job());
+            body.put("rowsThisRun", result.rowsThisRun());
+            body.put("elapsedMs", result.elapsedMs());
+            body.put("rowsPerSecond", Math.round(result.rowsPerSecond()));
+
+            int status = "FAILED".equals(result.job().getStatus()) ? 500 : 200;
+            return ResponseEntity.status(status).body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Import failed: " + e.getMessage()));
+        }
+    }
+
+    // ======================
+    // JOB STATUS
+    // ======================
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable Long jobId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("error", "Admin access required"));
+        }
+
+        Optional<ImportJob> job = historyImportService.getJob(jobId);
+        return job.<ResponseEntity<?>>map(j -> ResponseEntity.ok(toMap(j)))
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "Import job not found")));
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private boolean isAdmin() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        String email = authentication.getName();
+        return adminEmails.stream().anyMatch(admin -> admin.trim().equalsIgnoreCase(email));
+    }
+
+    private Map<String, Object> toMap(ImportJob job) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("jobId", job.getJobId());
+        map.put("target", job.getTarget());
+        map.put("format", job.getFormat());
+        map.put("source", job.getSourceName());
+        map.put("status", job.getStatus());
+        map.put("rowsCommitted", job.getRowsCommitted());
+        map.put("rowsRejected", job.getRowsRejected());
+        map.put("lastError", job.getLastError());
+        map.put("startedAt", job.getStartedAt());
+        map.put("updatedAt", job.getUpdatedAt());
+        map.put("finishedAt", job.getFinishedAt());
+        return map;
+    }
+}
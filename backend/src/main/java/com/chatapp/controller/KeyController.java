@@ -1,20 +1,29 @@
 package com.chatapp.controller;
 
 
+import com.chatapp.cache.GroupAccessCache;
 import com.chatapp.model.UserKey;
 import com.chatapp.model.GroupKey;
 import com.chatapp.model.GroupPublicKey;
 import com.chatapp.repository.UserKeyRepository;
 import com.chatapp.repository.GroupKeyRepository;
 import com.chatapp.repository.GroupPublicKeyRepository;
+import com.chatapp.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 
 @RestController
@@ -32,6 +41,10 @@ private GroupPublicKeyRepository groupPublicKeyRepository;
 
 @Autowired
 private GroupKeyRepository groupKeyRepository;
+
+
+@Autowired
+private GroupAccessCache groupAccessCache;
     //Register user keys (only once)
   @PostMapping("/user")
     public ResponseEntity<?> registerUserKeys(@RequestBody UserKey userKey) {
@@ -82,9 +95,18 @@ return opt.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().bui
 
 // POST /api/keys/group-member
 @PostMapping("/group-member")
-public ResponseEntity<?> uploadGroupMemberKey(@RequestBody GroupKey payload) {
+public ResponseEntity<?> uploadGroupMemberKey(@RequestBody GroupKey payload,
+                                              @AuthenticationPrincipal AuthenticatedUser currentUser) {
 // payload must contain groupId, userId, encryptedGroupPrivateKey, nonce
 // Upsert behavior: if row exists, update; otherwise insert
+String invalid = validateKey(payload);
+if (invalid != null) {
+return ResponseEntity.badRequest().body(Map.of("error", invalid));
+}
+if (!mayUploadKeys(currentUser, payload.getGroupId(), Set.of(payload.getUserId()))) {
+return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not allowed to upload keys for this group"));
+}
+
 Optional<GroupKey> existing = groupKeyRepository.findByGroupIdAndUserId(payload.getGroupId(), payload.getUserId());
 if (existing.isPresent()) {
 GroupKey g = existing.get();
@@ -93,16 +115,101 @@ g.setNonce(payload.getNonce());
 groupKeyRepository.save(g);
 return ResponseEntity.ok().build();
 } else {
-groupKeyRepository.save(payload);
+groupKeyRepository.save(newKey(payload));
 return ResponseEntity.status(HttpStatus.CREATED).build();
 }
 }
 
 
+// POST /api/keys/group-member/batch
+@PostMapping("/group-member/batch")
+public ResponseEntity<?> uploadGroupMemberKeys(@RequestBody List<GroupKey> payload,
+                                               @AuthenticationPrincipal AuthenticatedUser currentUser) {
+// Same upsert as above for every member of one group, written in a single batch
+if (payload == null || payload.isEmpty()) {
+return ResponseEntity.badRequest().body(Map.of("error", "No keys provided"));
+}
+for (GroupKey k : payload) {
+String invalid = validateKey(k);
+if (invalid != null) {
+return ResponseEntity.badRequest().body(Map.of("error", invalid));
+}
+}
+Long groupId = payload.get(0).getGroupId();
+if (payload.stream().anyMatch(k -> !groupId.equals(k.getGroupId()))) {
+return ResponseEntity.badRequest().body(Map.of("error", "All keys must belong to the same group"));
+}
+List<Long> userIds = payload.stream().map(GroupKey::getUserId).collect(Collectors.toList());
+if (new HashSet<>(userIds).size() != userIds.size()) {
+return ResponseEntity.badRequest().body(Map.of("error", "Duplicate userId in batch"));
+}
+if (!mayUploadKeys(currentUser, groupId, new HashSet<>(userIds))) {
+return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not allowed to upload keys for this group"));
+}
+
+Map<Long, GroupKey> existing = new HashMap<>();
+for (GroupKey g : groupKeyRepository.findByGroupIdAndUserIdIn(groupId, userIds)) {
+existing.put(g.getUserId(), g);
+}
+
+List<GroupKey> toSave = new ArrayList<>();
+int created = 0;
+for (GroupKey k : payload) {
+GroupKey g = existing.get(k.getUserId());
+if (g != null) {
+g.setEncryptedGroupPrivateKey(k.getEncryptedGroupPrivateKey());
+g.setNonce(k.getNonce());
+toSave.add(g);
+} else {
+toSave.add(newKey(k));
+created++;
+}
+}
+groupKeyRepository.saveAll(toSave);
+return ResponseEntity.ok(Map.of("created", created, "updated", toSave.size() - created));
+}
+
+
 // GET /api/keys/group-member/{groupId}/{userId}
 @GetMapping("/group-member/{groupId}/{userId}")
 public ResponseEntity<?> getGroupMemberKey(@PathVariable Long groupId, @PathVariable Long userId) {
 Optional<GroupKey> opt = groupKeyRepository.findByGroupIdAndUserId(groupId, userId);
 return opt.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
 }
-}
\ No newline at end of file
+
+
+// -----------------------------
+// Helpers
+// -----------------------------
+private static String validateKey(GroupKey k) {
+if (k == null || k.getGroupId() == null || k.getUserId() == null
+        || k.getEncryptedGroupPrivateKey() == null || k.getEncryptedGroupPrivateKey().isBlank()
+        || k.getNonce() == null || k.getNonce().isBlank()) {
+return "groupId, userId, encryptedGroupPrivateKey and nonce are required";
+}
+return null;
+}
+
+// Members may (re)upload their own key; only the group's creator distributes keys to others.
+// Every target must be a member of the group.
+private boolean mayUploadKeys(AuthenticatedUser currentUser, Long groupId, Set<Long> userIds) {
+if (currentUser == null || !groupAccessCache.isMember(groupId, currentUser.userId())) {
+return false;
+}
+boolean onlySelf = userIds.size() == 1 && userIds.contains(currentUser.userId());
+if (!onlySelf && !groupAccessCache.isAdmin(groupId, currentUser.userId())) {
+return false;
+}
+return groupAccessCache.getMemberIds(groupId).containsAll(userIds);
+}
+
+// Copies only the client-settable fields; id and createdAt are never taken from the request
+private static GroupKey newKey(GroupKey payload) {
+GroupKey g = new GroupKey();
+g.setGroupId(payload.getGroupId());
+g.setUserId(payload.getUserId());
+g.setEncryptedGroupPrivateKey(payload.getEncryptedGroupPrivateKey());
+g.setNonce(payload.getNonce());
+return g;
+}
+}
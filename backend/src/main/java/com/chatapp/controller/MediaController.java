@@ -1,34 +1,69 @@
 package com.chatapp.controller;
 
+import com.chatapp.cache.GroupAccessCache;
+import com.chatapp.exception.PayloadTooLargeException;
 import com.chatapp.model.MediaMessage;
+import com.chatapp.security.AuthenticatedUser;
+import com.chatapp.service.ChunkedUploadService;
+import com.chatapp.service.ChunkedUploadService.UploadSession;
 import com.chatapp.service.MediaService;
-import org.springframework.core.io.FileSystemResource;
+import com.chatapp.storage.MediaStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/media")
 public class MediaController {
 
+    private static final Logger log = LoggerFactory.getLogger(MediaController.class);
+
+    // Stored media never changes after upload (and is encrypted), so clients may keep it for good.
+    // private: responses are per-user authenticated and must not sit in shared caches.
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+
     private final MediaService mediaService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final MediaStorage storage;
+    private final GroupAccessCache groupAccessCache;
 
-    public MediaController(MediaService mediaService) {
+    public MediaController(MediaService mediaService, ChunkedUploadService chunkedUploadService,
+                           MediaStorage storage, GroupAccessCache groupAccessCache) {
         this.mediaService = mediaService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.storage = storage;
+        this.groupAccessCache = groupAccessCache;
     }
 
     @PostMapping("/upload/{groupId}")
     public ResponseEntity<?> uploadMedia(
             @RequestParam("file") MultipartFile file,
             @RequestParam("iv") String iv,
-            @PathVariable Long groupId) {
+            @PathVariable Long groupId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
+            if (!groupAccessCache.isMember(groupId, currentUser.userId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not a member of this group");
+            }
             // Validate IV
             if (iv == null || iv.isBlank()) {
                 return ResponseEntity.badRequest()
@@ -38,55 +73,283 @@ public class MediaController {
             MediaMessage media = mediaService.saveFile(file, groupId, iv);
             return ResponseEntity.ok(media);
         } catch (IOException e) {
-            e.printStackTrace();
+            log.warn("Upload to group {} failed", groupId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Upload failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streaming upload: the request body is the encrypted file itself
+     * (application/octet-stream), written straight to disk. Name, type and IV
+     * travel as query parameters.
+     */
+    @PostMapping("/upload-stream/{groupId}")
+    public ResponseEntity<?> uploadMediaStream(
+            @PathVariable Long groupId,
+            @RequestParam("iv") String iv,
+            @RequestParam("fileName") String fileName,
+            @RequestParam(value = "fileType", required = false) String fileType,
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
+            HttpServletRequest request) {
+        if (!groupAccessCache.isMember(groupId, currentUser.userId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not a member of this group");
+        }
+        if (iv == null || iv.isBlank()) {
+            return ResponseEntity.badRequest()
+                    .body("IV (Initialization Vector) is required for encryption");
+        }
+        // Reject declared oversize bodies before reading anything
+        if (request.getContentLengthLong() > mediaService.getMaxUploadBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Upload exceeds " + mediaService.getMaxUploadBytes() + " bytes");
+        }
+
+        try {
+            MediaMessage media = mediaService.saveStream(request.getInputStream(), groupId, fileName, fileType, iv);
+            return ResponseEntity.ok(media);
+        } catch (PayloadTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (IOException e) {
+            log.warn("Streaming upload to group {} failed", groupId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Upload failed: " + e.getMessage());
         }
     }
 
+    // ======================
+    // RESUMABLE (CHUNKED) UPLOADS
+    // ======================
+    @PostMapping("/uploads")
+    public ResponseEntity<?> createUpload(@RequestBody Map<String, Object> body,
+                                          @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            UploadSession session = chunkedUploadService.create(
+                    currentUser.userId(),
+                    ((Number) body.get("groupId")).longValue(),
+                    (String) body.get("fileName"),
+                    (String) body.get("fileType"),
+                    (String) body.get("iv"),
+                    ((Number) body.get("totalSize")).longValue(),
+                    ((Number) body.get("chunkSize")).intValue());
+            return ResponseEntity.status(HttpStatus.CREATED).body(uploadStatus(session));
+        } catch (ResponseStatusException e) {
+            return error(e);
+        } catch (NullPointerException | ClassCastException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "groupId, fileName, iv, totalSize and chunkSize are required"));
+        } catch (IOException e) {
+            log.warn("Could not create upload session", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Upload failed: " + e.getMessage()));
+        }
+    }
+
+    /** Raw chunk body, written at index * chunkSize; re-sending a chunk is harmless */
+    @PutMapping("/uploads/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(@PathVariable UUID uploadId,
+                                         @PathVariable int index,
+                                         @AuthenticationPrincipal AuthenticatedUser currentUser,
+                                         HttpServletRequest request) {
+        try {
+            UploadSession session = chunkedUploadService.writeChunk(
+                    uploadId, currentUser.userId(), index, request.getInputStream());
+            return ResponseEntity.ok(Map.of(
+                    "receivedChunks", session.receivedCount(),
+                    "chunkCount", session.chunkCount()));
+        } catch (ResponseStatusException e) {
+            return error(e);
+        } catch (IOException e) {
+            log.warn("Chunk {} of upload {} failed", index, uploadId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Chunk upload failed: " + e.getMessage()));
+        }
+    }
+
+    /** Which chunks are still missing; clients call this to resume */
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable UUID uploadId,
+                                       @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            return ResponseEntity.ok(uploadStatus(chunkedUploadService.get(uploadId, currentUser.userId())));
+        } catch (ResponseStatusException e) {
+            return error(e);
+        }
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable UUID uploadId,
+                                            @RequestParam(value = "checksum", required = false) String checksum,
+                                            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.complete(uploadId, currentUser.userId(), checksum));
+        } catch (ResponseStatusException e) {
+            return error(e);
+        } catch (IOException e) {
+            log.warn("Completing upload {} failed", uploadId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Upload failed: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable UUID uploadId,
+                                         @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            chunkedUploadService.abort(uploadId, currentUser.userId());
+            return ResponseEntity.noContent().build();
+        } catch (ResponseStatusException e) {
+            return error(e);
+        } catch (IOException e) {
+            log.warn("Aborting upload {} failed", uploadId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Abort failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Download with Range support (206, including multi-range) so video
+     * scrubbing and resumed downloads only fetch what they need. Responses
+     * are immutable with a content-hash ETag; revalidation answers 304.
+     */
     @GetMapping("/download/{mediaId}")
-    public ResponseEntity<FileSystemResource> downloadMedia(@PathVariable Long mediaId) {
+    public void downloadMedia(@PathVariable Long mediaId,
+                              @AuthenticationPrincipal AuthenticatedUser currentUser,
+                              HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        // One lookup gives both the path and the headers
+        MediaMessage metadata;
         try {
-            File file = mediaService.getFile(mediaId);
-            MediaMessage metadata = mediaService.getMediaMetadata(mediaId);
+            metadata = mediaService.getMediaMetadata(mediaId);
+        } catch (IOException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // Before the ETag check, so a non-member cannot probe for media with If-None-Match
+        if (!groupAccessCache.isMember(metadata.getGroupId(), currentUser.userId())) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Not a member of this group");
+            return;
+        }
 
-            if (!file.exists()) {
-                return ResponseEntity.notFound().build();
-            }
+        String etag = etagFor(metadata);
+        long lastModified = metadata.getUploadedAt().toEpochMilli() / 1000 * 1000;
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return; // 304, ETag and Last-Modified already set
+        }
 
-            FileSystemResource resource = new FileSystemResource(file);
+        String key = metadata.getFilePath();
+        long length;
+        try {
+            length = storage.size(key);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
 
-            // Safely determine file type
-            String contentType = metadata.getFileType();
-            if (contentType == null || contentType.isBlank()) {
-                contentType = "application/octet-stream";
-            }
+        // Safely determine file type
+        String contentType = metadata.getFileType();
+        if (contentType == null || contentType.isBlank()) {
+            contentType = "application/octet-stream";
+        }
+
+        // Properly quoted filename for safe download
+        String filename = metadata.getFileName().replace("\"", "");
 
-            // Properly quoted filename for safe download
-            String filename = metadata.getFileName().replace("\"", "");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        // Validators for If-Range as well as caching
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .header(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate")
-                    .header(HttpHeaders.PRAGMA, "no-cache")
-                    .header(HttpHeaders.EXPIRES, "0")
-                    .contentLength(file.length())
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+        MediaRangeWriter.write(request, response, storage, key, length, contentType);
+    }
 
+    /**
+     * Presigned URL to fetch the encrypted bytes straight from object storage,
+     * keeping large downloads off this server. 404 when the storage backend
+     * cannot issue one; clients then use /media/download.
+     */
+    @GetMapping("/download-url/{mediaId}")
+    public ResponseEntity<?> getDownloadUrl(@PathVariable Long mediaId,
+                                            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        MediaMessage metadata;
+        try {
+            metadata = mediaService.getMediaMetadata(mediaId);
         } catch (IOException e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return ResponseEntity.notFound().build();
         }
+        // The presigned URL is a bearer credential for the blob: only members may mint one
+        if (!groupAccessCache.isMember(metadata.getGroupId(), currentUser.userId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not a member of this group");
+        }
+
+        Instant expiresAt = Instant.now().plus(mediaService.getPresignTtl());
+        return mediaService.directDownloadUrl(metadata)
+                .<ResponseEntity<?>>map(url -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noStore())
+                        .body(Map.of("url", url.toString(), "expiresAt", expiresAt.toString())))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Direct downloads are not supported by " + storage.name() + " storage")));
     }
 
     @GetMapping("/info/{mediaId}")
-    public ResponseEntity<?> getMediaInfo(@PathVariable Long mediaId) {
+    public ResponseEntity<?> getMediaInfo(@PathVariable Long mediaId,
+                                          @AuthenticationPrincipal AuthenticatedUser currentUser,
+                                          WebRequest webRequest) {
+        MediaMessage metadata;
         try {
-            MediaMessage metadata = mediaService.getMediaMetadata(mediaId);
-            return ResponseEntity.ok(metadata);
+            metadata = mediaService.getMediaMetadata(mediaId);
         } catch (IOException e) {
             return ResponseEntity.notFound().build();
         }
+        if (!groupAccessCache.isMember(metadata.getGroupId(), currentUser.userId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not a member of this group");
+        }
+
+        // Separate validator from the blob's: same immutability, different representation
+        String etag = "\"info-" + etagFor(metadata).replace("\"", "") + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304
+        }
+
+        // Only what clients need to fetch and decrypt; the server-side path stays internal
+        Map<String, Object> info = new HashMap<>();
+        info.put("mediaId", metadata.getMediaId());
+        info.put("fileName", metadata.getFileName());
+        info.put("fileType", metadata.getFileType());
+        info.put("fileSize", metadata.getFileSize());
+        info.put("uploadedAt", metadata.getUploadedAt());
+        info.put("groupId", metadata.getGroupId());
+        info.put("iv", metadata.getIv());
+        info.put("checksum", metadata.getChecksum());
+        info.put("directDownload", storage.supportsPresignedGet());
+        return ResponseEntity.ok().eTag(etag).cacheControl(IMMUTABLE).body(info);
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private static Map<String, Object> uploadStatus(UploadSession session) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("uploadId", session.uploadId());
+        status.put("groupId", session.groupId());
+        status.put("fileName", session.fileName());
+        status.put("totalSize", session.totalSize());
+        status.put("chunkSize", session.chunkSize());
+        status.put("chunkCount", session.chunkCount());
+        status.put("receivedChunks", session.receivedCount());
+        status.put("missingChunks", session.missingChunks());
+        return status;
+    }
+
+    /** Strong ETag: the content hash, or the id for uploads stored before checksums existed */
+    private static String etagFor(MediaMessage media) {
+        return media.getChecksum() != null
+                ? "\"" + media.getChecksum() + "\""
+                : "\"media-" + media.getMediaId() + "-" + media.getFileSize() + "\"";
+    }
+
+    private static ResponseEntity<?> error(ResponseStatusException e) {
+        return ResponseEntity.status(e.getStatusCode()).body(Map.of("error", String.valueOf(e.getReason())));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package com.chatapp.controller;
+
+import com.chatapp.storage.MediaStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Writes a stored file as a full (200), single-range (206) or multi-range
+ * (206 multipart/byteranges) response.
+ *
+ * Local files are never read into application buffers: when the connector
+ * supports it (Tomcat NIO does) a whole file or single range is handed to
+ * Tomcat's sendfile, which writes it from the page cache straight to the
+ * socket; otherwise, and for multi-range parts, FileChannel.transferTo is used.
+ * Remote objects are streamed through with one ranged read per region.
+ */
+final class MediaRangeWriter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private MediaRangeWriter() {}
+
+    /**
+     * Serve the object at {@code key} honouring the request's Range header. Headers that do
+     * not depend on the range (Content-Disposition, caching) must already be
+     * set; Content-Type, Content-Length, Content-Range and Accept-Ranges are
+     * set here.
+     */
+    static void write(HttpServletRequest request, HttpServletResponse response,
+                      MediaStorage storage, String key, long length, String contentType) throws IOException {
+        Optional<Path> file = storage.localPath(key);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || length == 0 || !ifRangeMatches(request, response)) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            writeRegion(request, response, storage, key, file, 0, length);
+            return;
+        }
+
+        List<long[]> regions = parseRegions(rangeHeader, length);
+        if (regions == null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (regions.size() == 1) {
+            long[] r = regions.get(0);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(r, length));
+            writeRegion(request, response, storage, key, file, r[0], r[1] - r[0] + 1);
+        } else {
+            writeMultipart(response, storage, key, file, length, contentType, regions);
+        }
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+
+    /** If-Range: only honour the Range when the validator still matches */
+    private static boolean ifRangeMatches(HttpServletRequest request, HttpServletResponse response) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        String etag = response.getHeader(HttpHeaders.ETAG);
+        if (etag != null && ifRange.equals(etag)) return true;
+        String lastModified = response.getHeader(HttpHeaders.LAST_MODIFIED);
+        return lastModified != null && ifRange.equals(lastModified);
+    }
+
+    /** Inclusive [start, end] pairs, or null when unsatisfiable or abusive (more bytes than the file) */
+    private static List<long[]> parseRegions(String rangeHeader, long length) {
+        try {
+            List<long[]> regions = new ArrayList<>();
+            long total = 0;
+            for (HttpRange range : HttpRange.parseRanges(rangeHeader)) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                if (start >= length || start > end) return null;
+                total += end - start + 1;
+                regions.add(new long[] { start, end });
+            }
+            return regions.isEmpty() || total > length ? null : regions;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeRegion(HttpServletRequest request, HttpServletResponse response,
+                                    MediaStorage storage, String key, Optional<Path> file,
+                                    long start, long count) throws IOException {
+        response.setContentLengthLong(count);
+        if (file.isEmpty()) {
+            try (InputStream in = storage.getRange(key, start, count)) {
+                in.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.get().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+            transfer(channel, start, count, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private static void writeMultipart(HttpServletResponse response, MediaStorage storage, String key,
+                                       Optional<Path> file, long length, String contentType,
+                                       List<long[]> regions) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (long[] r : regions) {
+            byte[] header = ("\r\n--" + boundary + "\r\n" +
+                    "Content-Type: " + contentType + "\r\n" +
+                    "Content-Range: " + contentRange(r, length) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + (r[1] - r[0] + 1);
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        response.setContentLengthLong(contentLength + closing.length);
+
+        OutputStream out = response.getOutputStream();
+        if (file.isEmpty()) {
+            for (int i = 0; i < regions.size(); i++) {
+                long[] r = regions.get(i);
+                out.write(partHeaders.get(i));
+                try (InputStream in = storage.getRange(key, r[0], r[1] - r[0] + 1)) {
+                    in.transferTo(out);
+                }
+            }
+        } else {
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+                for (int i = 0; i < regions.size(); i++) {
+                    long[] r = regions.get(i);
+                    out.write(partHeaders.get(i));
+                    transfer(channel, r[0], r[1] - r[0] + 1, target);
+                }
+            }
+        }
+        out.write(closing);
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        while (count > 0) {
+            long sent = channel.transferTo(position, count, target);
+            if (sent <= 0) break; // file shrank underneath us
+            position += sent;
+            count -= sent;
+        }
+    }
+
+    private static String contentRange(long[] region, long length) {
+        return "bytes " + region[0] + "-" + region[1] + "/" + length;
+    }
+}
@@ -0,0 +1,148 @@
+package com.chatapp.controller;
+
+import com.chatapp.cache.GroupAccessCache;
+import com.chatapp.cache.VerifiedTokenCache;
+import com.chatapp.datasource.ReplicaRoutingDataSource;
+import com.chatapp.security.LoginThrottle;
+import com.chatapp.security.PasswordHasher;
+import com.chatapp.security.TokenRevocationList;
+import com.chatapp.security.UploadThrottle;
+import com.chatapp.service.BigintKeyMigrationService;
+import com.chatapp.service.ChunkedUploadService;
+import com.chatapp.service.DeliveryCompactionService;
+import com.chatapp.service.MediaBlobStore;
+import com.chatapp.service.MediaLayoutMigrator;
+import com.chatapp.service.MessageClientIds;
+import com.chatapp.service.OrphanMediaCollector;
+import com.chatapp.service.PartitionMaintenanceService;
+import com.chatapp.service.SessionStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RestController
+public class StatsController {
+
+    private final GroupAccessCache groupAccessCache;
+    private final PartitionMaintenanceService partitionMaintenanceService;
+    private final BigintKeyMigrationService bigintKeyMigrationService;
+    private final DeliveryCompactionService deliveryCompactionService;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRouting;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenRevocationList tokenRevocationList;
+    private final SessionStore sessionStore;
+    private final PasswordHasher passwordHasher;
+    private final LoginThrottle loginThrottle;
+    private final ChunkedUploadService chunkedUploadService;
+    private final MediaBlobStore mediaBlobStore;
+    private final MediaLayoutMigrator mediaLayoutMigrator;
+    private final OrphanMediaCollector orphanMediaCollector;
+    private final UploadThrottle uploadThrottle;
+    private final MessageClientIds messageClientIds;
+
+    // Comma-separated emails allowed to read internal metrics (same list as /api/admin/**)
+    @Value("${chatapp.admin.emails:}")
+    private List<String> adminEmails;
+
+    // The verification scans whole tables; never run more than one at a time
+    private final AtomicBoolean verifying = new AtomicBoolean(false);
+
+    public StatsController(GroupAccessCache groupAccessCache,
+                           PartitionMaintenanceService partitionMaintenanceService,
+                           BigintKeyMigrationService bigintKeyMigrationService,
+                           DeliveryCompactionService deliveryCompactionService,
+                           ObjectProvider<ReplicaRoutingDataSource> replicaRouting,
+                           VerifiedTokenCache verifiedTokenCache,
+                           TokenRevocationList tokenRevocationList,
+                           SessionStore sessionStore,
+                           PasswordHasher passwordHasher,
+                           LoginThrottle loginThrottle,
+                           ChunkedUploadService chunkedUploadService,
+                           MediaBlobStore mediaBlobStore,
+                           MediaLayoutMigrator mediaLayoutMigrator,
+                           OrphanMediaCollector orphanMediaCollector,
+                           UploadThrottle uploadThrottle,
+                           MessageClientIds messageClientIds) {
+        this.groupAccessCache = groupAccessCache;
+        this.partitionMaintenanceService = partitionMaintenanceService;
+        this.bigintKeyMigrationService = bigintKeyMigrationService;
+        this.deliveryCompactionService = deliveryCompactionService;
+        this.replicaRouting = replicaRouting;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenRevocationList = tokenRevocationList;
+        this.sessionStore = sessionStore;
+        this.passwordHasher = passwordHasher;
+        this.loginThrottle = loginThrottle;
+        this.chunkedUploadService = chunkedUploadService;
+        this.mediaBlobStore = mediaBlobStore;
+        this.mediaLayoutMigrator = mediaLayoutMigrator;
+        this.orphanMediaCollector = orphanMediaCollector;
+        this.uploadThrottle = uploadThrottle;
+        this.messageClientIds = messageClientIds;
+    }
+
+    // Internal cache/job metrics (admins only)
+    @GetMapping("/api/stats")
+    public ResponseEntity<?> stats() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("error", "Admin access required"));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("groupAccessCache", groupAccessCache.stats());
+        response.put("verifiedTokenCache", verifiedTokenCache.stats());
+        response.put("tokenRevocations", tokenRevocationList.stats());
+        response.put("sessions", sessionStore.stats());
+        response.put("passwordHashing", passwordHasher.stats());
+        response.put("loginThrottle", loginThrottle.stats());
+        response.put("uploadAdmission", uploadThrottle.stats());
+        response.put("chunkedUploads", chunkedUploadService.stats());
+        response.put("mediaBlobs", mediaBlobStore.stats());
+        response.put("mediaLayoutMigration", mediaLayoutMigrator.stats());
+        response.put("orphanMedia", orphanMediaCollector.stats());
+        response.put("partitions", partitionMaintenanceService.stats());
+        response.put("bigintKeyMigration", bigintKeyMigrationService.stats());
+        response.put("deliveryCompaction", deliveryCompactionService.stats());
+        response.put("messageClientIds", messageClientIds.stats());
+        ReplicaRoutingDataSource routing = replicaRouting.getIfAvailable();
+        response.put("readReplicas", routing != null ? routing.stats() : Map.of("enabled", false));
+        return ResponseEntity.ok(response);
+    }
+
+    // Re-run the BIGINT key verification on demand (admins only, one at a time)
+    @GetMapping("/api/stats/bigint-keys/verify")
+    public ResponseEntity<?> verifyBigintKeys() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("error", "Admin access required"));
+        }
+        if (!verifying.compareAndSet(false, true)) {
+            return ResponseEntity.status(409).body(Map.of("error", "Verification already running"));
+        }
+        try {
+            return ResponseEntity.ok(bigintKeyMigrationService.verify());
+        } finally {
+            verifying.set(false);
+        }
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private boolean isAdmin() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        String email = authentication.getName();
+        return adminEmails.stream().anyMatch(admin -> admin.trim().equalsIgnoreCase(email));
+    }
+}
@@ -1,22 +1,34 @@
 package com.chatapp.controller;
 
+import com.chatapp.cache.UsernamePrefixIndex;
 import com.chatapp.model.User;
+import com.chatapp.security.AuthenticatedUser;
 import com.chatapp.repository.UserRepository;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_SEARCH_RESULTS = 50;
+
     private final UserRepository userRepository;
+    private final UsernamePrefixIndex usernamePrefixIndex;
 
-    public UserController(UserRepository userRepository) {
+    public UserController(UserRepository userRepository, UsernamePrefixIndex usernamePrefixIndex) {
         this.userRepository = userRepository;
+        this.usernamePrefixIndex = usernamePrefixIndex;
     }
 
     // Get user by ID
@@ -49,25 +61,60 @@ public class UserController {
         }
     }
 
-    // Get all usernames (for searching/users list)
+    // Get usernames, one page at a time (for searching/users list)
     @GetMapping("/usernames")
-    public ResponseEntity<?> getAllUsernames() {
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getAllUsernames(@RequestParam(defaultValue = "0") int page,
+                                             @RequestParam(defaultValue = "100") int size) {
         try {
-            List<User> users = userRepository.findAll();
-            List<String> usernames = users.stream()
-                    .map(User::getUsername)
-                    .toList();
+            int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+            List<String> usernames = userRepository.findUsernames(PageRequest.of(Math.max(page, 0), pageSize));
             return ResponseEntity.ok(usernames);
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error: " + e.getMessage());
         }
     }
 
-    // Search users by username
+    // Search users by username (substring match, best matches first)
     @GetMapping("/search")
-    public ResponseEntity<?> searchUsers(@RequestParam String query) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> searchUsers(@RequestParam String query,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        try {
+            String q = query.trim();
+            if (q.isEmpty()) {
+                return ResponseEntity.ok(List.of());
+            }
+            int max = Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+            List<User> users = userRepository.searchByUsername("%" + escapeLike(q) + "%", q, max);
+            return ResponseEntity.ok(users);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Error: " + e.getMessage());
+        }
+    }
+
+    // Username autocomplete (prefix match, served from memory when the index is loaded)
+    @GetMapping("/autocomplete")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> autocomplete(@RequestParam String prefix,
+                                          @RequestParam(defaultValue = "10") int limit) {
         try {
-            List<User> users = userRepository.findByUsernameContainingIgnoreCase(query);
+            String p = prefix.trim();
+            if (p.isEmpty()) {
+                return ResponseEntity.ok(List.of());
+            }
+            int max = Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+            if (usernamePrefixIndex.isReady()) {
+                return ResponseEntity.ok(usernamePrefixIndex.complete(p, max));
+            }
+
+            List<Map<String, Object>> users = new ArrayList<>();
+            for (User user : userRepository.searchByUsername(escapeLike(p) + "%", p, max)) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("user_id", user.getUserId());
+                entry.put("username", user.getUsername());
+                users.add(entry);
+            }
             return ResponseEntity.ok(users);
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error: " + e.getMessage());
@@ -78,25 +125,23 @@ public class UserController {
 public record UserProfileDTO(Long id, String username, String email) {}
 
     @GetMapping("/me")
-public ResponseEntity<?> getCurrentUser() {
-    var authentication = SecurityContextHolder.getContext().getAuthentication();
-    if (authentication == null || !authentication.isAuthenticated()) {
+public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser currentUser) {
+    if (currentUser == null) {
         return ResponseEntity.status(401).body("Unauthorized");
     }
 
-    String email = authentication.getName();
-
-    Optional<User> userOpt = userRepository.findByEmail(email);
-    if (userOpt.isPresent()) {
-        User user = userOpt.get();
-        return ResponseEntity.ok(new UserProfileDTO(
-                user.getUserId(),
-                user.getUsername(),
-                user.getEmail()
-        ));
-    } else {
-        return ResponseEntity.status(404).body("User not found");
-    }
+    // Everything needed is in the verified token; no lookup
+    return ResponseEntity.ok(new UserProfileDTO(
+            currentUser.userId(),
+            currentUser.username(),
+            currentUser.email()
+    ));
 }
 
-}
\ No newline at end of file
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,68 @@
+package com.chatapp.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-your-writes for replica routing. Remembers when each user last wrote
+ * and pins that user's requests to the primary until every replica that may
+ * still be routed to is guaranteed to have caught up with the write.
+ */
+@Component
+public class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final Map<Long, Long> lastWriteByUser = new ConcurrentHashMap<>();
+
+    // A routed replica is at most max-lag behind as of its last check, and one
+    // more check interval may pass before it is checked again
+    private final long windowMs;
+
+    public ReadYourWrites(@Value("${chatapp.datasource.replica.max-lag-ms:2000}") long maxLagMs,
+                          @Value("${chatapp.datasource.replica.lag-check-interval-ms:1000}") long checkIntervalMs) {
+        this.windowMs = maxLagMs + checkIntervalMs;
+    }
+
+    // ======================
+    // PER-USER WRITE TRACKING
+    // ======================
+    public void recordWrite(Long userId) {
+        if (userId != null) {
+            lastWriteByUser.put(userId, System.currentTimeMillis());
+        }
+    }
+
+    public boolean wroteRecently(Long userId) {
+        if (userId == null) return false;
+        Long at = lastWriteByUser.get(userId);
+        return at != null && System.currentTimeMillis() - at <= windowMs;
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - windowMs;
+        lastWriteByUser.values().removeIf(at -> at < cutoff);
+    }
+
+    // ======================
+    // PER-THREAD PINNING
+    // ======================
+
+    /** Route every read on the current thread to the primary until {@link #clear()} */
+    public static void pinToPrimary() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return Boolean.TRUE.equals(PINNED.get());
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+}
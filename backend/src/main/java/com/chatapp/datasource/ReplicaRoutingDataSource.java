@@ -0,0 +1,241 @@
+package com.chatapp.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Picks the DataSource for read-only connections: a replica that is within the
+ * lag tolerance (round robin), otherwise the primary.
+ *
+ * Only read-only transactions declared by application code go to a replica.
+ * Spring Data's own implicit read-only transactions (a bare findById outside a
+ * service transaction) stay on the primary, so callers opt in explicitly with
+ * {@code @Transactional(readOnly = true)}.
+ *
+ * Lag is measured in WAL positions rather than replay timestamps: each check
+ * samples the primary's current LSN, and a replica's lag is the age of the
+ * newest sample it has replayed. That stays correct on an idle primary and is
+ * immune to clock skew between hosts.
+ *
+ * A lag value is only trusted while it is fresh: if no check has succeeded for
+ * a replica within maxSampleAgeMs (the probe was delayed or keeps failing), the
+ * replica counts as lagging and reads go to the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    public static final String PRIMARY = "primary";
+
+    private static final int MAX_SAMPLES = 256;
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMs;
+    private final long maxSampleAgeMs;
+
+    private final Deque<long[]> primarySamples = new ArrayDeque<>(); // {takenAtMillis, lsn}
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaRoutes = new LongAdder();
+    private final LongAdder pinnedRoutes = new LongAdder();
+    private final LongAdder fallbackRoutes = new LongAdder();
+    private final LongAdder staleRoutes = new LongAdder();
+    private volatile boolean primaryReachable = true;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicaDataSources,
+                                    long maxLagMs, long maxSampleAgeMs) {
+        this.primary = primary;
+        this.maxLagMs = maxLagMs;
+        this.maxSampleAgeMs = maxSampleAgeMs;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicaDataSources.forEach((name, ds) -> {
+            targets.put(name, ds);
+            replicas.add(new Replica(name, ds));
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!isDeclaredReadOnlyTransaction()) {
+            return PRIMARY;
+        }
+        if (ReadYourWrites.isPinnedToPrimary()) {
+            pinnedRoutes.increment();
+            return PRIMARY;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean sawStale = false;
+        int n = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+            Replica replica = replicas.get((start + i) % n);
+            if (!replica.healthy || replica.lagMs > maxLagMs) continue;
+            if (now - replica.checkedAt > maxSampleAgeMs) {
+                sawStale = true;
+                continue;
+            }
+            replicaRoutes.increment();
+            return replica.name;
+        }
+        (sawStale ? staleRoutes : fallbackRoutes).increment();
+        return PRIMARY;
+    }
+
+    /**
+     * Sample the primary's WAL position, then see how far each replica has
+     * replayed. Replicas that cannot be reached are taken out of rotation.
+     */
+    @Scheduled(fixedDelayString = "${chatapp.datasource.replica.lag-check-interval-ms:1000}")
+    public void checkReplicationLag() {
+        long sampledAt = System.currentTimeMillis();
+        try {
+            String lsn = queryString(primary, "SELECT pg_current_wal_lsn()::text");
+            synchronized (primarySamples) {
+                primarySamples.addFirst(new long[] { sampledAt, parseLsn(lsn) });
+                while (primarySamples.size() > MAX_SAMPLES) primarySamples.removeLast();
+            }
+            primaryReachable = true;
+        } catch (Exception e) {
+            // The check runs every second; only the first failure in a row gets a stack trace
+            if (primaryReachable) {
+                log.warn("Replica lag check: primary unreachable", e);
+            } else {
+                log.debug("Replica lag check: primary still unreachable: {}", e.getMessage());
+            }
+            primaryReachable = false;
+            return;
+        }
+
+        for (Replica replica : replicas) {
+            try {
+                // NULL when the instance is not in recovery (a standalone copy): treat as current
+                String replayed = queryString(replica.dataSource,
+                        "SELECT CASE WHEN pg_is_in_recovery() THEN pg_last_wal_replay_lsn()::text END");
+                long now = System.currentTimeMillis();
+                replica.lagMs = replayed == null ? 0 : lagFor(parseLsn(replayed), now);
+                replica.checkedAt = now;
+                if (replica.lastError != null) {
+                    log.info("Replica {} back in rotation", replica.name);
+                }
+                replica.healthy = true;
+                replica.lastError = null;
+            } catch (Exception e) {
+                // lastError is only set while failing, so this logs once per outage (including one at startup)
+                if (replica.lastError == null) {
+                    log.warn("Replica {} taken out of rotation", replica.name, e);
+                }
+                replica.healthy = false;
+                replica.lastError = String.valueOf(e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Object> perReplica = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (Replica replica : replicas) {
+            long sampleAge = replica.checkedAt == 0 ? -1 : now - replica.checkedAt;
+            Map<String, Object> r = new HashMap<>();
+            r.put("healthy", replica.healthy);
+            r.put("lagMs", replica.lagMs == Long.MAX_VALUE ? null : replica.lagMs);
+            r.put("sampleAgeMs", sampleAge < 0 ? null : sampleAge);
+            r.put("inRotation", replica.healthy && replica.lagMs <= maxLagMs
+                    && sampleAge >= 0 && sampleAge <= maxSampleAgeMs);
+            r.put("lastError", replica.lastError);
+            perReplica.put(replica.name, r);
+        }
+        stats.put("replicas", perReplica);
+        stats.put("maxLagMs", maxLagMs);
+        stats.put("maxSampleAgeMs", maxSampleAgeMs);
+        stats.put("replicaRoutes", replicaRoutes.sum());
+        stats.put("pinnedToPrimary", pinnedRoutes.sum());
+        stats.put("fallbackToPrimary", fallbackRoutes.sum());
+        stats.put("staleSampleToPrimary", staleRoutes.sum());
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private static boolean isDeclaredReadOnlyTransaction() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) return false;
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        return name != null && !name.startsWith("org.springframework.");
+    }
+
+    /** Age of the newest primary sample the replica has replayed past */
+    private long lagFor(long replayedLsn, long now) {
+        synchronized (primarySamples) {
+            for (long[] sample : primarySamples) {
+                if (Long.compareUnsigned(replayedLsn, sample[1]) >= 0) {
+                    return now - sample[0];
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static String queryString(DataSource dataSource, String sql) throws Exception {
+        try (Connection c = dataSource.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    /** "16/B374D848" -> 0x16B374D848 */
+    private static long parseLsn(String lsn) {
+        int slash = lsn.indexOf('/');
+        long hi = Long.parseLong(lsn.substring(0, slash), 16);
+        long lo = Long.parseLong(lsn.substring(slash + 1), 16);
+        return (hi << 32) | lo;
+    }
+
+    private static class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile boolean healthy = false;
+        volatile long lagMs = Long.MAX_VALUE;
+        volatile long checkedAt; // millis of the last successful check, 0 = never
+        volatile String lastError;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.chatapp.exception;
+
+/**
+ * The request body is larger than the configured limit; maps to 413.
+ */
+public class PayloadTooLargeException extends RuntimeException {
+
+    private final long maxBytes;
+
+    public PayloadTooLargeException(String message, long maxBytes) {
+        super(message);
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
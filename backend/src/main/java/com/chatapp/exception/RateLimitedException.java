@@ -0,0 +1,19 @@
+package com.chatapp.exception;
+
+/**
+ * The request was turned away to protect the server; maps to 429 with a
+ * Retry-After header.
+ */
+public class RateLimitedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
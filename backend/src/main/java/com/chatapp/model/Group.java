@@ -8,7 +8,8 @@ import java.time.LocalDateTime;
 public class Group {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "groups_seq")
+    @SequenceGenerator(name = "groups_seq", sequenceName = "groups_group_id_seq", allocationSize = 50)
     private Long groupId;
 
     private String groupName;
@@ -11,7 +11,8 @@ public class GroupKey {
 
 
 @Id
-@GeneratedValue(strategy = GenerationType.IDENTITY)
+@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "group_keys_seq")
+@SequenceGenerator(name = "group_keys_seq", sequenceName = "group_keys_id_seq", allocationSize = 50)
 private Long id;
 
 
@@ -1,11 +1,12 @@
 package com.chatapp.model;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
 
 @Entity
 @Table(name = "group_members")
 @IdClass(GroupMemberId.class)
-public class GroupMember {
+public class GroupMember implements Persistable<GroupMemberId> {
 
     @Id
     private Long groupId;
@@ -13,9 +14,23 @@ public class GroupMember {
     @Id
     private Long userId;
 
+    // Id is assigned, so tell Spring Data when to persist instead of merge (merge SELECTs first)
+    @Transient
+    private boolean isNew = true;
+
     // Getters and setters
     public Long getGroupId() { return groupId; }
     public void setGroupId(Long groupId) { this.groupId = groupId; }
     public Long getUserId() { return userId; }
     public void setUserId(Long userId) { this.userId = userId; }
+
+    @Override
+    public GroupMemberId getId() { return new GroupMemberId(groupId, userId); }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
 }
@@ -8,7 +8,8 @@ import java.time.Instant;
 public class MediaMessage {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "media_message_seq")
+    @SequenceGenerator(name = "media_message_seq", sequenceName = "media_message_media_id_seq", allocationSize = 50)
     @Column(name = "media_id")
     private Long mediaId;
 
@@ -33,6 +34,18 @@ public class MediaMessage {
     @Column(nullable = false)
     private String iv; 
 
+    // SHA-256 (hex) of the stored bytes; null for uploads that predate it
+    @Column(length = 64)
+    private String checksum;
+
+    // Set when the bytes live in the content-addressed blob store (refcounted by trigger)
+    @Column(name = "blob_checksum", length = 64)
+    private String blobChecksum;
+
+    // On-disk layout of filePath (MediaService.LAYOUT_*); flat paths are moved by MediaLayoutMigrator
+    @Column(name = "layout_version", nullable = false)
+    private Integer layoutVersion = 1;
+
     // Getters and setters...
     public Long getMediaId() { return mediaId; }
     public void setMediaId(Long mediaId) { this.mediaId = mediaId; }
@@ -57,4 +70,13 @@ public class MediaMessage {
 
     public String getIv() { return iv; }
     public void setIv(String iv) { this.iv = iv; }
+
+    public String getChecksum() { return checksum; }
+    public void setChecksum(String checksum) { this.checksum = checksum; }
+
+    public String getBlobChecksum() { return blobChecksum; }
+    public void setBlobChecksum(String blobChecksum) { this.blobChecksum = blobChecksum; }
+
+    public Integer getLayoutVersion() { return layoutVersion; }
+    public void setLayoutVersion(Integer layoutVersion) { this.layoutVersion = layoutVersion; }
 }
\ No newline at end of file
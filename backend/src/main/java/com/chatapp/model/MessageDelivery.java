@@ -1,10 +1,12 @@
 package com.chatapp.model;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "message_delivery")
-public class MessageDelivery {
+public class MessageDelivery implements Persistable<MessageDeliveryId> {
 
     @EmbeddedId
     private MessageDeliveryId id;
@@ -22,6 +24,14 @@ public class MessageDelivery {
     @Column(nullable = false)
     private boolean delivered = false;
 
+    // Partition key: mirrors the message's created_at so both land in the same month
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Id is assigned, so tell Spring Data when to persist instead of merge (merge SELECTs first)
+    @Transient
+    private boolean isNew = true;
+
     // Constructors
     public MessageDelivery() {}
 
@@ -29,6 +39,7 @@ public class MessageDelivery {
         this.message = message;
         this.user = user;
         this.id = new MessageDeliveryId(message.getMessageId(), user.getUserId());
+        this.createdAt = message.getCreatedAt();
     }
 
     // Getters & Setters
@@ -41,6 +52,17 @@ public class MessageDelivery {
     public boolean isDelivered() { return delivered; }
     public void setDelivered(boolean delivered) { this.delivered = delivered; }
 
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    @Override
     public MessageDeliveryId getId() { return id; }
     public void setId(MessageDeliveryId id) { this.id = id; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
 }
@@ -6,10 +6,13 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
 @Repository
 public interface GroupKeyRepository extends JpaRepository<GroupKey, Long> {
 Optional<GroupKey> findByGroupIdAndUserId(Long groupId, Long userId);
+List<GroupKey> findByGroupIdAndUserIdIn(Long groupId, Collection<Long> userIds);
 }
\ No newline at end of file
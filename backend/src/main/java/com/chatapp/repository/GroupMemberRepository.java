@@ -3,6 +3,8 @@ package com.chatapp.repository;
 import com.chatapp.model.GroupMember;
 import com.chatapp.model.GroupMemberId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
@@ -15,6 +17,10 @@ public interface GroupMemberRepository extends JpaRepository<GroupMember, GroupM
 
     List<GroupMember> findByUserId(Long userId);
 
+    // Member ids only, used to populate the membership cache
+    @Query("SELECT gm.userId FROM GroupMember gm WHERE gm.groupId = :groupId")
+    List<Long> findUserIdsByGroupId(@Param("groupId") Long groupId);
+
     boolean existsByGroupIdAndUserId(Long groupId, Long userId);
     
     int countByGroupId(Long groupId);
@@ -0,0 +1,9 @@
+package com.chatapp.repository;
+
+import com.chatapp.model.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+}
@@ -3,11 +3,25 @@ package com.chatapp.repository;
 import com.chatapp.model.MessageDelivery;
 import com.chatapp.model.MessageDeliveryId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface MessageDeliveryRepository extends JpaRepository<MessageDelivery, MessageDeliveryId> {
 
     // Find undelivered messages for a specific user
     List<MessageDelivery> findByUserUserIdAndDeliveredFalse(Long userId);
+
+    // Includes the partition key, so only the month partition holding the row is touched
+    @Modifying
+    @Transactional
+    @Query("UPDATE MessageDelivery d SET d.delivered = true " +
+           "WHERE d.id.messageId = :messageId AND d.id.userId = :userId AND d.createdAt = :createdAt")
+    int markDelivered(@Param("messageId") Long messageId,
+                      @Param("userId") Long userId,
+                      @Param("createdAt") LocalDateTime createdAt);
 }
@@ -5,12 +5,17 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
     List<Message> findByGroupIdOrderByCreatedAtAsc(Long groupId, Pageable pageable);
+
+    // created_at lets the lookup go to a single partition
+    Optional<Message> findByMessageIdAndCreatedAt(Long messageId, LocalDateTime createdAt);
     
     int countBySenderId(Long senderId);
     
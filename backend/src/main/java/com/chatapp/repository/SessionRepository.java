@@ -6,6 +6,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.Optional;
 
 public interface SessionRepository extends JpaRepository<Session, Long> {
-    Optional<Session> findByToken(String token);
+    Optional<Session> findByTokenHash(String tokenHash);
     void deleteByUser(User user);
 }
@@ -1,7 +1,10 @@
 package com.chatapp.repository;
 
 import com.chatapp.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.Optional;
 import java.util.List;
 
@@ -9,4 +12,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
     List<User> findByUsernameContainingIgnoreCase(String username);
+
+    // pattern is an ILIKE pattern (already escaped); served by idx_users_username_trgm
+    @Query(value = "SELECT * FROM users WHERE username ILIKE :pattern " +
+                   "ORDER BY similarity(username, :query) DESC, username LIMIT :limit",
+           nativeQuery = true)
+    List<User> searchByUsername(@Param("pattern") String pattern,
+                                @Param("query") String query,
+                                @Param("limit") int limit);
+
+    @Query("SELECT u.username FROM User u ORDER BY u.username, u.userId")
+    List<String> findUsernames(Pageable pageable);
 }
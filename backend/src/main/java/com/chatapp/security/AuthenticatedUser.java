@@ -0,0 +1,16 @@
+package com.chatapp.security;
+
+import java.security.Principal;
+
+/**
+ * The authenticated caller, built by the JWT filter from the token's claims
+ * (no database lookup). Controllers receive it via @AuthenticationPrincipal.
+ * getName() stays the email so Authentication.getName() keeps its meaning.
+ */
+public record AuthenticatedUser(Long userId, String email, String username) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -0,0 +1,54 @@
+package com.chatapp.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The address a request came from, for per-client throttling. The socket
+ * peer is used unless it is one of chatapp.auth.trusted-proxies. In that case
+ * the client is the right-most address in the forwarded header that is not
+ * itself a trusted proxy. Entries further left were written by the client
+ * and cannot be trusted.
+ *
+ * Behind NAT without such a proxy (e.g. Docker Desktop port publishing)
+ * every client shares one peer address.
+ */
+@Component
+public class ClientAddressResolver {
+
+    private final Set<String> trustedProxies;
+    private final String forwardedHeader;
+
+    public ClientAddressResolver(@Value("${chatapp.auth.trusted-proxies:}") List<String> trustedProxies,
+                                 @Value("${chatapp.auth.forwarded-header:X-Forwarded-For}") String forwardedHeader) {
+        this.trustedProxies = trustedProxies.stream()
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.forwardedHeader = forwardedHeader;
+    }
+
+    public String clientAddress(HttpServletRequest request) {
+        String peer = request.getRemoteAddr();
+        if (!trustedProxies.contains(peer)) {
+            return peer;
+        }
+        String forwarded = request.getHeader(forwardedHeader);
+        if (forwarded == null || forwarded.isBlank()) {
+            return peer;
+        }
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                return hop;
+            }
+        }
+        return peer;
+    }
+}
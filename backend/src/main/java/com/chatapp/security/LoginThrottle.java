@@ -0,0 +1,171 @@
+package com.chatapp.security;
+
+import com.chatapp.exception.RateLimitedException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sliding-window limits checked before any password hashing:
+ *  - per client IP (see ClientAddressResolver), every login/registration attempt
+ *    counts; off unless chatapp.auth.throttle.ip.max-attempts is set;
+ *  - per (email, client IP), only failed logins count and a success clears
+ *    them. Guessing one account's password from one address is slowed down,
+ *    but someone else sending bad passwords for an email cannot lock its
+ *    owner out from another address;
+ *  - per email across all addresses, a much higher failure cap, so guessing
+ *    spread over many addresses is still bounded.
+ */
+@Component
+public class LoginThrottle {
+
+    private final int maxPerIp;
+    private final long ipWindowMs;
+    private final int maxFailuresPerEmail;
+    private final int maxFailuresPerEmailGlobal;
+    private final long emailWindowMs;
+
+    private final Map<String, Window> ipWindows = new ConcurrentHashMap<>();
+    private final Map<String, Window> emailIpWindows = new ConcurrentHashMap<>();
+    private final Map<String, Window> emailWindows = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedByIp = new LongAdder();
+    private final LongAdder rejectedByEmail = new LongAdder();
+    private final LongAdder rejectedByEmailGlobal = new LongAdder();
+
+    public LoginThrottle(@Value("${chatapp.auth.throttle.ip.max-attempts:0}") int maxPerIp,
+                         @Value("${chatapp.auth.throttle.ip.window-ms:60000}") long ipWindowMs,
+                         @Value("${chatapp.auth.throttle.email.max-failures:10}") int maxFailuresPerEmail,
+                         @Value("${chatapp.auth.throttle.email.max-failures-global:100}") int maxFailuresPerEmailGlobal,
+                         @Value("${chatapp.auth.throttle.email.window-ms:900000}") long emailWindowMs) {
+        this.maxPerIp = maxPerIp;
+        this.ipWindowMs = ipWindowMs;
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.maxFailuresPerEmailGlobal = maxFailuresPerEmailGlobal;
+        this.emailWindowMs = emailWindowMs;
+    }
+
+    // ======================
+    // CHECKS
+    // ======================
+    /** Count an attempt from this IP; throws RateLimitedException when over the limit (0 = no limit) */
+    public void checkIp(String ip) {
+        if (ip == null || maxPerIp <= 0) return;
+        long retryAfterMs = ipWindows.computeIfAbsent(ip, k -> new Window())
+                .tryAdd(System.currentTimeMillis(), maxPerIp, ipWindowMs);
+        if (retryAfterMs > 0) {
+            rejectedByIp.increment();
+            throw new RateLimitedException("Too many attempts, please retry later", seconds(retryAfterMs));
+        }
+    }
+
+    /**
+     * Throws RateLimitedException while the email has too many recent failures
+     * from this IP, or from all addresses together.
+     */
+    public void checkEmail(String email, String ip) {
+        if (email == null) return;
+        long now = System.currentTimeMillis();
+
+        Window pair = emailIpWindows.get(key(email, ip));
+        long retryAfterMs = pair == null ? 0 : pair.retryAfter(now, maxFailuresPerEmail, emailWindowMs);
+        if (retryAfterMs > 0) {
+            rejectedByEmail.increment();
+            throw new RateLimitedException("Too many failed logins for this account, please retry later",
+                    seconds(retryAfterMs));
+        }
+
+        Window global = emailWindows.get(key(email));
+        retryAfterMs = global == null ? 0 : global.retryAfter(now, maxFailuresPerEmailGlobal, emailWindowMs);
+        if (retryAfterMs > 0) {
+            rejectedByEmailGlobal.increment();
+            throw new RateLimitedException("Too many failed logins for this account, please retry later",
+                    seconds(retryAfterMs));
+        }
+    }
+
+    public void recordFailure(String email, String ip) {
+        if (email == null) return;
+        long now = System.currentTimeMillis();
+        emailIpWindows.computeIfAbsent(key(email, ip), k -> new Window()).add(now, maxFailuresPerEmail);
+        emailWindows.computeIfAbsent(key(email), k -> new Window()).add(now, maxFailuresPerEmailGlobal);
+    }
+
+    public void recordSuccess(String email, String ip) {
+        if (email == null) return;
+        emailIpWindows.remove(key(email, ip));
+        emailWindows.remove(key(email));
+    }
+
+    // ======================
+    // CLEANUP / STATS
+    // ======================
+    @Scheduled(fixedDelayString = "${chatapp.auth.throttle.cleanup-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        ipWindows.values().removeIf(w -> w.isIdle(now, ipWindowMs));
+        emailIpWindows.values().removeIf(w -> w.isIdle(now, emailWindowMs));
+        emailWindows.values().removeIf(w -> w.isIdle(now, emailWindowMs));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("trackedIps", ipWindows.size());
+        stats.put("trackedEmails", emailWindows.size());
+        stats.put("trackedEmailIpPairs", emailIpWindows.size());
+        stats.put("rejectedByIp", rejectedByIp.sum());
+        stats.put("rejectedByEmail", rejectedByEmail.sum());
+        stats.put("rejectedByEmailGlobal", rejectedByEmailGlobal.sum());
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private static String key(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String email, String ip) {
+        return key(email) + '|' + ip;
+    }
+
+    private static long seconds(long millis) {
+        return (millis + 999) / 1000;
+    }
+
+    /** Timestamps of recent events, at most {@code limit} kept */
+    private static final class Window {
+        private final ArrayDeque<Long> events = new ArrayDeque<>();
+
+        /** Adds the event and returns 0, or returns the ms until a slot frees up */
+        synchronized long tryAdd(long now, int limit, long windowMs) {
+            long retryAfter = retryAfter(now, limit, windowMs);
+            if (retryAfter == 0) events.addLast(now);
+            return retryAfter;
+        }
+
+        synchronized void add(long now, int limit) {
+            events.addLast(now);
+            while (events.size() > limit) events.removeFirst();
+        }
+
+        synchronized long retryAfter(long now, int limit, long windowMs) {
+            while (!events.isEmpty() && events.peekFirst() <= now - windowMs) events.removeFirst();
+            return events.size() < limit ? 0 : events.peekFirst() + windowMs - now;
+        }
+
+        synchronized boolean isIdle(long now, long windowMs) {
+            Long last = events.peekLast();
+            return last == null || last <= now - windowMs;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.chatapp.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Revoked (logged-out) tokens, checked on every authentication without a
+ * database round trip. A Bloom filter answers "definitely not revoked" for the
+ * common case; only filter hits consult the exact map. Entries live until the
+ * token's own expiry, after which the token is rejected anyway.
+ *
+ * The revoked_tokens table is the source of truth: it is loaded at startup,
+ * polled for revocations made by other instances, and purged of expired rows.
+ * The poll cursor is read from the database clock, the same clock that stamps
+ * revoked_at, so skew between the backend hosts and the database cannot make a
+ * poll skip rows.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    /** Re-read rows stamped this long before the cursor: revoked_at is set at insert, not commit */
+    private static final long SYNC_OVERLAP_MS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int expectedEntries;
+
+    // token hash -> token expiry (epoch millis)
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter bloom;
+    private volatile Timestamp lastSync = new Timestamp(0);
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder bloomHits = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public TokenRevocationList(JdbcTemplate jdbcTemplate,
+                               @Value("${chatapp.auth.revocation.expected-entries:100000}") int expectedEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedEntries = expectedEntries;
+        this.bloom = new BloomFilter(expectedEntries);
+    }
+
+    // ======================
+    // CHECK / REVOKE
+    // ======================
+    public boolean isRevoked(String tokenHash) {
+        checks.increment();
+        if (!bloom.mightContain(tokenHash)) {
+            return false;
+        }
+        bloomHits.increment();
+
+        Long expiresAt = revoked.get(tokenHash);
+        boolean hit = expiresAt != null && expiresAt > System.currentTimeMillis();
+        if (hit) rejected.increment();
+        return hit;
+    }
+
+    /** Persist the revocation first, then make it visible locally */
+    public void revoke(String tokenHash, Long userId, Instant expiresAt) {
+        jdbcTemplate.update(
+                "INSERT INTO revoked_tokens (token_hash, user_id, expires_at) VALUES (?, ?, ?) " +
+                "ON CONFLICT (token_hash) DO NOTHING",
+                tokenHash, userId, Timestamp.from(expiresAt));
+        addLocal(tokenHash, expiresAt.toEpochMilli());
+    }
+
+    // ======================
+    // LOAD / SYNC / PURGE
+    // ======================
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        try {
+            Timestamp cursor = databaseNow();
+            jdbcTemplate.query(
+                    "SELECT token_hash, expires_at FROM revoked_tokens WHERE expires_at > ?",
+                    rs -> { addLocal(rs.getString("token_hash"), rs.getTimestamp("expires_at").getTime()); },
+                    new Timestamp(System.currentTimeMillis()));
+            lastSync = cursor;
+            log.info("Token revocation list loaded: {} active entries", revoked.size());
+        } catch (Exception e) {
+            // lastSync stays at 0, so the next sync performs the full load
+            log.error("Token revocation list load failed", e);
+        }
+    }
+
+    /** Pick up revocations made by other backend instances */
+    @Scheduled(fixedDelayString = "${chatapp.auth.revocation.sync-ms:5000}",
+               initialDelayString = "${chatapp.auth.revocation.sync-ms:5000}")
+    public void syncRecent() {
+        try {
+            // Read the cursor before scanning, so a row committed during the scan is picked up next time
+            Timestamp cursor = databaseNow();
+            Timestamp since = new Timestamp(lastSync.getTime() - SYNC_OVERLAP_MS);
+            jdbcTemplate.query(
+                    "SELECT token_hash, expires_at FROM revoked_tokens WHERE revoked_at >= ? AND expires_at > ?",
+                    rs -> { addLocal(rs.getString("token_hash"), rs.getTimestamp("expires_at").getTime()); },
+                    since, new Timestamp(System.currentTimeMillis()));
+            lastSync = cursor;
+        } catch (Exception e) {
+            log.warn("Token revocation sync failed", e);
+        }
+    }
+
+    /** Drop expired entries (memory and table) and rebuild the filter without them */
+    @Scheduled(fixedDelayString = "${chatapp.auth.revocation.purge-ms:600000}",
+               initialDelayString = "${chatapp.auth.revocation.purge-ms:600000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            revoked.values().removeIf(expiresAt -> expiresAt <= now);
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revoked.size() * 2));
+            revoked.keySet().forEach(rebuilt::add);
+            bloom = rebuilt;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM revoked_tokens WHERE expires_at <= ?", new Timestamp(now));
+        } catch (Exception e) {
+            log.warn("Token revocation purge failed", e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("activeEntries", revoked.size());
+        stats.put("bloomCapacity", bloom.capacity);
+        stats.put("checks", checks.sum());
+        stats.put("bloomHits", bloomHits.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    /** LOCALTIMESTAMP matches how the revoked_at DEFAULT NOW() lands in a TIMESTAMP column */
+    private Timestamp databaseNow() {
+        return jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", Timestamp.class);
+    }
+
+    private synchronized void addLocal(String tokenHash, long expiresAtMillis) {
+        if (expiresAtMillis <= System.currentTimeMillis()) return;
+        revoked.put(tokenHash, expiresAtMillis);
+        bloom.add(tokenHash);
+        // Keep the false-positive rate in check if far more tokens are revoked than planned for
+        if (revoked.size() > bloom.capacity) {
+            BloomFilter grown = new BloomFilter(bloom.capacity * 2);
+            revoked.keySet().forEach(grown::add);
+            bloom = grown;
+        }
+    }
+
+    /**
+     * Fixed-size Bloom filter (~1% false positives at capacity) over token
+     * hashes. The key is already a SHA-256 digest, so its first 16 bytes give
+     * the two independent hashes for double hashing.
+     */
+    private static final class BloomFilter {
+        private static final int HASHES = 7;
+        private static final int BITS_PER_ENTRY = 10;
+
+        final int capacity;
+        private final long bitCount;
+        private final AtomicLongArray words;
+
+        BloomFilter(int capacity) {
+            this.capacity = Math.max(capacity, 1024);
+            this.bitCount = (long) this.capacity * BITS_PER_ENTRY;
+            this.words = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        }
+
+        void add(String tokenHash) {
+            long[] h = hashes(tokenHash);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h[0] + i * h[1], bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << (bit & 63);
+                words.accumulateAndGet(word, mask, (a, b) -> a | b);
+            }
+        }
+
+        boolean mightContain(String tokenHash) {
+            long[] h = hashes(tokenHash);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h[0] + i * h[1], bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long[] hashes(String tokenHash) {
+            ByteBuffer digest = ByteBuffer.wrap(Base64.getUrlDecoder().decode(tokenHash));
+            return new long[] { digest.getLong(), digest.getLong() | 1 };
+        }
+    }
+}
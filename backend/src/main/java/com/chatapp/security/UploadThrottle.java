@@ -0,0 +1,168 @@
+package com.chatapp.security;
+
+import com.chatapp.exception.RateLimitedException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for uploads, decided before any body byte is read:
+ *  - a global and a per-user cap on concurrent uploads;
+ *  - a global byte-rate budget (token bucket). An admitted upload is charged
+ *    its full declared length up front and may drive the bucket into debt;
+ *    new uploads are refused until the debt is paid back, so the average
+ *    write rate stays within budget without ever stalling a request mid-body.
+ * Refusals are RateLimitedExceptions carrying a Retry-After; nothing waits.
+ */
+@Component
+public class UploadThrottle {
+
+    private final int maxConcurrent;
+    private final int maxPerUser;
+    private final long bytesPerSecond;
+    private final long burstBytes;
+    private final int retryAfterSeconds;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final Map<Long, Integer> perUser = new ConcurrentHashMap<>();
+
+    // Token bucket, in bytes; negative while in debt
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedGlobal = new LongAdder();
+    private final LongAdder rejectedPerUser = new LongAdder();
+    private final LongAdder rejectedByteRate = new LongAdder();
+    private final LongAdder bytesCharged = new LongAdder();
+
+    public UploadThrottle(@Value("${chatapp.media.admission.max-concurrent:16}") int maxConcurrent,
+                          @Value("${chatapp.media.admission.max-per-user:3}") int maxPerUser,
+                          @Value("${chatapp.media.admission.bytes-per-second:104857600}") long bytesPerSecond,
+                          @Value("${chatapp.media.admission.burst-bytes:268435456}") long burstBytes,
+                          @Value("${chatapp.media.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxPerUser = maxPerUser;
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstBytes = burstBytes;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.tokens = burstBytes;
+    }
+
+    /**
+     * Admit an upload of {@code declaredBytes} (-1 if unknown; charge it later
+     * through the permit). Throws RateLimitedException when over any limit.
+     */
+    public Permit admit(Long userId, long declaredBytes) {
+        long debtSeconds = secondsUntilSolvent();
+        if (debtSeconds > 0) {
+            rejectedByteRate.increment();
+            throw new RateLimitedException("Upload bandwidth exhausted, please retry later", debtSeconds);
+        }
+
+        if (inFlight.incrementAndGet() > maxConcurrent) {
+            inFlight.decrementAndGet();
+            rejectedGlobal.increment();
+            throw new RateLimitedException("Too many uploads in progress, please retry later", retryAfterSeconds);
+        }
+
+        boolean[] accepted = { false };
+        perUser.compute(userId, (k, count) -> {
+            int n = count == null ? 0 : count;
+            if (n >= maxPerUser) return count;
+            accepted[0] = true;
+            return n + 1;
+        });
+        if (!accepted[0]) {
+            inFlight.decrementAndGet();
+            rejectedPerUser.increment();
+            throw new RateLimitedException("Too many of your uploads in progress, please retry later",
+                    retryAfterSeconds);
+        }
+
+        long declared = Math.max(declaredBytes, 0);
+        charge(declared);
+        inFlightBytes.addAndGet(declared);
+        admitted.increment();
+        return new Permit(userId, declared);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("inFlightUploads", inFlight.get());
+        stats.put("inFlightBytes", inFlightBytes.get());
+        stats.put("usersUploading", perUser.size());
+        stats.put("admitted", admitted.sum());
+        stats.put("rejectedGlobal", rejectedGlobal.sum());
+        stats.put("rejectedPerUser", rejectedPerUser.sum());
+        stats.put("rejectedByteRate", rejectedByteRate.sum());
+        stats.put("bytesCharged", bytesCharged.sum());
+        stats.put("budgetAvailableBytes", bytesPerSecond > 0 ? availableTokens() : null);
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("maxPerUser", maxPerUser);
+        stats.put("bytesPerSecond", bytesPerSecond);
+        return stats;
+    }
+
+    /** One admitted upload; close when the request finishes */
+    public final class Permit implements AutoCloseable {
+        private final Long userId;
+        private final long declaredBytes;
+        private boolean closed;
+
+        private Permit(Long userId, long declaredBytes) {
+            this.userId = userId;
+            this.declaredBytes = declaredBytes;
+        }
+
+        /** Charge bytes read beyond the declared length (bodies sent without Content-Length) */
+        public void chargeActual(long bytesRead) {
+            if (bytesRead > declaredBytes) charge(bytesRead - declaredBytes);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) return;
+            closed = true;
+            inFlightBytes.addAndGet(-declaredBytes);
+            inFlight.decrementAndGet();
+            perUser.computeIfPresent(userId, (k, count) -> count <= 1 ? null : count - 1);
+        }
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private synchronized void charge(long bytes) {
+        if (bytesPerSecond <= 0 || bytes <= 0) return;
+        refill();
+        tokens -= bytes;
+        bytesCharged.add(bytes);
+    }
+
+    /** 0 when the bucket is not in debt, else whole seconds until it is paid back */
+    private synchronized long secondsUntilSolvent() {
+        if (bytesPerSecond <= 0) return 0;
+        refill();
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / bytesPerSecond);
+    }
+
+    private synchronized long availableTokens() {
+        refill();
+        return (long) tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burstBytes, tokens + (now - lastRefillNanos) / 1e9 * bytesPerSecond);
+        lastRefillNanos = now;
+    }
+}
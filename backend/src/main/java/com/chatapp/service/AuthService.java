@@ -1,11 +1,13 @@
 package com.chatapp.service;
 
+import com.chatapp.cache.UsernamePrefixIndex;
 import com.chatapp.model.User;
 import com.chatapp.model.Session;
 import com.chatapp.repository.UserRepository;
 import com.chatapp.repository.SessionRepository;
+import com.chatapp.security.LoginThrottle;
+import com.chatapp.security.PasswordHasher;
 
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -16,21 +18,33 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final SessionRepository sessionRepository;
+    private final SessionStore sessionStore;
     private final JwtService jwtService;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final UsernamePrefixIndex usernamePrefixIndex;
+    private final PasswordHasher passwordHasher;
+    private final LoginThrottle loginThrottle;
 
     public AuthService(UserRepository userRepository,
                        SessionRepository sessionRepository,
-                       JwtService jwtService) {
+                       SessionStore sessionStore,
+                       JwtService jwtService,
+                       UsernamePrefixIndex usernamePrefixIndex,
+                       PasswordHasher passwordHasher,
+                       LoginThrottle loginThrottle) {
         this.userRepository = userRepository;
         this.sessionRepository = sessionRepository;
+        this.sessionStore = sessionStore;
         this.jwtService = jwtService;
+        this.usernamePrefixIndex = usernamePrefixIndex;
+        this.passwordHasher = passwordHasher;
+        this.loginThrottle = loginThrottle;
     }
 
     // ======================
     // REGISTER
     // ======================
-    public User register(String username, String email, String password) {
+    public User register(String username, String email, String password, String clientIp) {
+        loginThrottle.checkIp(clientIp);
         System.out.println("AuthService: Registering user with email: " + email);
         
         if (userRepository.existsByEmail(email)) {
@@ -41,11 +55,12 @@ public class AuthService {
         User user = new User();
         user.setUsername(username);
         user.setEmail(email);
-        user.setPasswordHash(passwordEncoder.encode(password));
+        user.setPasswordHash(passwordHasher.encode(password));
         
         System.out.println("AuthService: Saving user: " + email);
         User savedUser = userRepository.save(user);
         System.out.println("AuthService: User saved successfully with ID: " + savedUser.getUserId());
+        usernamePrefixIndex.add(savedUser.getUserId(), savedUser.getUsername());
         
         return savedUser;
     }
@@ -53,27 +68,30 @@ public class AuthService {
     // ======================
     // LOGIN
     // ======================
-    public String login(String email, String password) {
+    public String login(String email, String password, String clientIp) {
+        // Throttle before any bcrypt work is spent on the attempt
+        loginThrottle.checkIp(clientIp);
+        loginThrottle.checkEmail(email, clientIp);
+
         Optional<User> userOpt = userRepository.findByEmail(email);
         if (userOpt.isEmpty()) {
+            loginThrottle.recordFailure(email, clientIp);
             throw new RuntimeException("Invalid credentials");
         }
 
         User user = userOpt.get();
-        if (!passwordEncoder.matches(password, user.getPasswordHash())) {
+        if (!passwordHasher.matches(password, user.getPasswordHash())) {
+            loginThrottle.recordFailure(email, clientIp);
             throw new RuntimeException("Invalid credentials");
         }
+        loginThrottle.recordSuccess(email, clientIp);
 
         // Generate JWT
         String token = jwtService.generateToken(user);
 
-        // Store in session table
-        Session session = new Session();
-        session.setUser(user);
-        session.setToken(token);
-        session.setCreatedAt(LocalDateTime.now());
-        session.setExpiresAt(LocalDateTime.now().plusHours(12)); // 12h expiry
-        sessionRepository.save(session);
+        // Store in session table (batched by the write-behind store)
+        LocalDateTime now = LocalDateTime.now();
+        sessionStore.save(user.getUserId(), JwtService.tokenHash(token), now, now.plusHours(12)); // 12h expiry
 
         return token;
     }
@@ -81,22 +99,27 @@ public class AuthService {
     // ======================
     // LOGOUT
     // ======================
-   public Long logout(String token) {
-    Optional<Session> sessionOpt = sessionRepository.findByToken(token);
-    if (sessionOpt.isPresent()) {
-        Session session = sessionOpt.get();
-        Long userId = session.getUser().getUserId();
-        sessionRepository.delete(session);
+    public Long logout(String token) {
+        Long userId = jwtService.revoke(token);
+        sessionStore.delete(JwtService.tokenHash(token));
         return userId;
     }
-    return null;
-}
 
     // ======================
     // VALIDATE SESSION
     // ======================
     public boolean validateSession(String token) {
-        Optional<Session> sessionOpt = sessionRepository.findByToken(token);
+        String tokenHash = JwtService.tokenHash(token);
+        if (sessionStore.isPending(tokenHash)) {
+            try {
+                jwtService.verify(token);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        Optional<Session> sessionOpt = sessionRepository.findByTokenHash(tokenHash);
         if (sessionOpt.isEmpty()) return false;
 
         Session session = sessionOpt.get();
@@ -0,0 +1,389 @@
+package com.chatapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Widens groups.group_id from int4 (SERIAL) to a BIGINT identity column without
+ * holding a long table lock. V10 added a trigger-maintained shadow column
+ * (group_id_big); this service then:
+ *
+ *   1. backfills the shadow column in small batches (one short transaction each),
+ *   2. builds its unique index CONCURRENTLY and a validated NOT NULL check,
+ *   3. verifies shadow == original for every row and that all referencing FK
+ *      columns are already BIGINT,
+ *   4. swaps the columns in one short transaction (lock_timeout bounded),
+ *      re-adding referencing FKs as NOT VALID,
+ *   5. validates those FKs afterwards, which does not block writes.
+ *
+ * Each step is recorded in key_migrations, so a restart resumes where it stopped.
+ * A failed run (e.g. the swap hitting lock_timeout) is retried in the background
+ * after retry-backoff-ms * 2^failures, and left FAILED after max-attempts.
+ */
+@Service
+public class BigintKeyMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(BigintKeyMigrationService.class);
+
+    private static final String TABLE = "groups";
+    private static final String COLUMN = "group_id";
+    private static final String SHADOW = "group_id_big";
+    private static final String SEQUENCE = "groups_group_id_seq";
+    private static final String SHADOW_INDEX = "groups_group_id_big_key";
+    private static final String SHADOW_NOT_NULL = "groups_group_id_big_not_null";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate txTemplate;
+
+    @Value("${chatapp.migration.bigint-keys.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chatapp.migration.bigint-keys.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${chatapp.migration.bigint-keys.batch-pause-ms:50}")
+    private long batchPauseMs;
+
+    @Value("${chatapp.migration.bigint-keys.lock-timeout:3s}")
+    private String lockTimeout;
+
+    @Value("${chatapp.migration.bigint-keys.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${chatapp.migration.bigint-keys.retry-backoff-ms:60000}")
+    private long retryBackoffMs;
+
+    private volatile boolean running = false;
+    private volatile int failures = 0;
+    private volatile long nextRetryAt = 0;
+
+    public BigintKeyMigrationService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) return;
+        startWorker();
+    }
+
+    /**
+     * Re-run a failed migration once its backoff has elapsed. The work itself
+     * happens on the migration thread so a long backfill does not hold up the
+     * shared scheduler.
+     */
+    @Scheduled(fixedDelayString = "${chatapp.migration.bigint-keys.retry-check-ms:30000}",
+               initialDelayString = "${chatapp.migration.bigint-keys.retry-check-ms:30000}")
+    public void retryIfFailed() {
+        if (!enabled || running || failures == 0 || failures >= maxAttempts) return;
+        if (System.currentTimeMillis() < nextRetryAt) return;
+
+        log.info("Retrying BIGINT key migration (attempt {} of {})", failures + 1, maxAttempts);
+        startWorker();
+    }
+
+    /**
+     * Drive the migration forward from whatever step was last recorded.
+     */
+    public synchronized void run() {
+        running = true;
+        try {
+            String status = currentStatus();
+            if (status == null || "VALIDATED".equals(status)) return;
+
+            if ("PENDING".equals(status) || "FAILED".equals(status)) {
+                if (!shadowColumnExists()) {
+                    // Swap already happened before the failure was recorded
+                    validateConstraints();
+                    return;
+                }
+                backfill();
+                status = "BACKFILLED";
+            }
+            if ("BACKFILLED".equals(status)) {
+                prepareShadowColumn();
+                Map<String, Object> report = verify();
+                if (!Boolean.TRUE.equals(report.get("ok"))) {
+                    throw new IllegalStateException("Verification failed: " + report);
+                }
+                jdbcTemplate.update("UPDATE key_migrations SET status = 'VERIFIED', verified_at = NOW(), updated_at = NOW() " +
+                        "WHERE table_name = ? AND column_name = ?", TABLE, COLUMN);
+                status = "VERIFIED";
+            }
+            if ("VERIFIED".equals(status)) {
+                swap();
+                status = "SWAPPED";
+            }
+            if ("SWAPPED".equals(status)) {
+                validateConstraints();
+            }
+            log.info("BIGINT key migration: {}.{} is now BIGINT identity", TABLE, COLUMN);
+            failures = 0;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            failures++;
+            nextRetryAt = System.currentTimeMillis() + retryBackoffMs * (1L << Math.min(failures - 1, 20));
+            if (failures >= maxAttempts) {
+                log.error("BIGINT key migration failed {} times, giving up until restart", failures, e);
+            } else {
+                log.warn("BIGINT key migration failed (attempt {} of {}), retrying after {}",
+                        failures, maxAttempts, Instant.ofEpochMilli(nextRetryAt), e);
+            }
+            try {
+                jdbcTemplate.update("UPDATE key_migrations SET status = 'FAILED', last_error = ?, updated_at = NOW() " +
+                        "WHERE table_name = ? AND column_name = ?", e.getMessage(), TABLE, COLUMN);
+            } catch (Exception updateFailure) {
+                log.warn("Could not record BIGINT key migration failure: {}", updateFailure.getMessage());
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Verification report: rows whose shadow value differs, referencing FK
+     * columns that are not BIGINT, and the current key/sequence types.
+     */
+    public Map<String, Object> verify() {
+        Map<String, Object> report = new HashMap<>();
+
+        long mismatches = shadowColumnExists()
+                ? jdbcTemplate.queryForObject("SELECT count(*) FROM groups WHERE group_id_big IS DISTINCT FROM group_id", Long.class)
+                : 0L;
+
+        List<String> narrowReferences = jdbcTemplate.queryForList(
+                "SELECT c.conrelid::regclass::text || '.' || a.attname || ' (' || format_type(a.atttypid, a.atttypmod) || ')' " +
+                "FROM pg_constraint c " +
+                "JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = ANY (c.conkey) " +
+                "WHERE c.contype = 'f' AND c.confrelid = 'groups'::regclass AND c.conparentid = 0 " +
+                "AND format_type(a.atttypid, a.atttypmod) <> 'bigint'", String.class);
+
+        report.put("mismatchedRows", mismatches);
+        report.put("nonBigintReferences", narrowReferences);
+        report.put("groupIdType", columnType(TABLE, COLUMN));
+        report.put("messageIdType", columnType("messages", "message_id"));
+        report.put("groupSequenceType", sequenceType(SEQUENCE));
+        report.put("messageSequenceType", sequenceType("messages_message_id_seq"));
+        report.put("ok", mismatches == 0 && narrowReferences.isEmpty());
+        return report;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        jdbcTemplate.query("SELECT status, rows_backfilled, verified_at, swapped_at, last_error FROM key_migrations " +
+                "WHERE table_name = ? AND column_name = ?", rs -> {
+                    stats.put("status", rs.getString("status"));
+                    stats.put("rowsBackfilled", rs.getLong("rows_backfilled"));
+                    stats.put("verifiedAt", rs.getString("verified_at"));
+                    stats.put("swappedAt", rs.getString("swapped_at"));
+                    stats.put("lastError", rs.getString("last_error"));
+                }, TABLE, COLUMN);
+        stats.put("groupIdType", columnType(TABLE, COLUMN));
+        stats.put("failedAttempts", failures);
+        stats.put("maxAttempts", maxAttempts);
+        stats.put("gaveUp", failures >= maxAttempts);
+        if (failures > 0 && failures < maxAttempts) {
+            stats.put("nextRetryAt", Instant.ofEpochMilli(nextRetryAt).toString());
+        }
+        return stats;
+    }
+
+    // ======================
+    // STEP 1: batched backfill
+    // ======================
+    private void backfill() throws InterruptedException {
+        long total = 0;
+        int updated;
+        do {
+            updated = jdbcTemplate.update(
+                    "UPDATE groups SET group_id_big = group_id WHERE group_id IN " +
+                    "(SELECT group_id FROM groups WHERE group_id_big IS NULL LIMIT ?)", batchSize);
+            total += updated;
+            jdbcTemplate.update("UPDATE key_migrations SET rows_backfilled = rows_backfilled + ?, updated_at = NOW() " +
+                    "WHERE table_name = ? AND column_name = ?", updated, TABLE, COLUMN);
+            if (updated > 0 && batchPauseMs > 0) {
+                Thread.sleep(batchPauseMs);
+            }
+        } while (updated > 0);
+
+        jdbcTemplate.update("UPDATE key_migrations SET status = 'BACKFILLED', updated_at = NOW() " +
+                "WHERE table_name = ? AND column_name = ?", TABLE, COLUMN);
+        log.info("BIGINT key migration: backfilled {} rows of {}", total, TABLE);
+    }
+
+    // ======================
+    // STEP 2: unique index + NOT NULL proof, both built without blocking writes
+    // ======================
+    private void prepareShadowColumn() {
+        Boolean indexValid = jdbcTemplate.query(
+                "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?",
+                rs -> rs.next() ? rs.getBoolean(1) : null, SHADOW_INDEX);
+        if (Boolean.FALSE.equals(indexValid)) {
+            // Left behind by an interrupted CREATE INDEX CONCURRENTLY
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + SHADOW_INDEX);
+        }
+        jdbcTemplate.execute("CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS " + SHADOW_INDEX + " ON groups (" + SHADOW + ")");
+
+        Integer checks = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_constraint WHERE conname = ? AND conrelid = 'groups'::regclass", Integer.class, SHADOW_NOT_NULL);
+        if (checks == null || checks == 0) {
+            jdbcTemplate.execute("ALTER TABLE groups ADD CONSTRAINT " + SHADOW_NOT_NULL + " CHECK (" + SHADOW + " IS NOT NULL) NOT VALID");
+        }
+        // VALIDATE only takes a SHARE UPDATE EXCLUSIVE lock; SET NOT NULL can then skip its scan
+        jdbcTemplate.execute("ALTER TABLE groups VALIDATE CONSTRAINT " + SHADOW_NOT_NULL);
+    }
+
+    // ======================
+    // STEP 4: the swap (metadata-only statements under a bounded lock wait)
+    // ======================
+    private void swap() {
+        txTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("SET LOCAL lock_timeout = '" + lockTimeout + "'");
+            jdbcTemplate.execute("LOCK TABLE groups IN ACCESS EXCLUSIVE MODE");
+
+            // The trigger kept new rows in sync; catch anything written between verify and lock
+            jdbcTemplate.update("UPDATE groups SET group_id_big = group_id WHERE group_id_big IS DISTINCT FROM group_id");
+
+            List<String[]> foreignKeys = jdbcTemplate.query(
+                    "SELECT c.conrelid::regclass::text, c.conname, pg_get_constraintdef(c.oid), r.relkind = 'p' " +
+                    "FROM pg_constraint c JOIN pg_class r ON r.oid = c.conrelid " +
+                    "WHERE c.contype = 'f' AND c.confrelid = 'groups'::regclass AND c.conparentid = 0",
+                    (rs, i) -> new String[] {rs.getString(1), rs.getString(2), rs.getString(3), String.valueOf(rs.getBoolean(4))});
+
+            for (String[] fk : foreignKeys) {
+                jdbcTemplate.execute("ALTER TABLE " + fk[0] + " DROP CONSTRAINT " + fk[1]);
+            }
+
+            Long start = jdbcTemplate.queryForObject(
+                    "SELECT GREATEST((SELECT COALESCE(max(group_id), 0) FROM groups), " +
+                    "(SELECT COALESCE(last_value, 0) FROM pg_sequences WHERE sequencename = ?)) + " +
+                    "(SELECT increment_by FROM pg_sequences WHERE sequencename = ?)", Long.class, SEQUENCE, SEQUENCE);
+            Long increment = jdbcTemplate.queryForObject(
+                    "SELECT increment_by FROM pg_sequences WHERE sequencename = ?", Long.class, SEQUENCE);
+
+            jdbcTemplate.execute("ALTER TABLE groups DROP CONSTRAINT groups_pkey");
+            jdbcTemplate.execute("DROP TRIGGER groups_sync_group_id_big ON groups");
+            jdbcTemplate.execute("ALTER TABLE groups RENAME COLUMN group_id TO group_id_int");
+            jdbcTemplate.execute("ALTER TABLE groups RENAME COLUMN " + SHADOW + " TO group_id");
+            jdbcTemplate.execute("ALTER TABLE groups ALTER COLUMN group_id SET NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE groups DROP CONSTRAINT " + SHADOW_NOT_NULL);
+            jdbcTemplate.execute("ALTER TABLE groups ADD CONSTRAINT groups_pkey PRIMARY KEY USING INDEX " + SHADOW_INDEX);
+            // Dropping the old column also drops the SERIAL sequence it owned
+            jdbcTemplate.execute("ALTER TABLE groups DROP COLUMN group_id_int");
+            jdbcTemplate.execute("ALTER TABLE groups ALTER COLUMN group_id ADD GENERATED BY DEFAULT AS IDENTITY " +
+                    "(SEQUENCE NAME " + SEQUENCE + " START WITH " + start + " INCREMENT BY " + increment + ")");
+            jdbcTemplate.execute("DROP FUNCTION IF EXISTS groups_sync_group_id_big()");
+
+            // Re-add FKs without scanning the referencing tables
+            StringBuilder pending = new StringBuilder();
+            for (String[] fk : foreignKeys) {
+                boolean partitioned = Boolean.parseBoolean(fk[3]);
+                // NOT VALID is not allowed on a partitioned parent; add it per partition instead
+                List<String> targets = partitioned ? leafPartitions(fk[0]) : List.of(fk[0]);
+                for (String target : targets) {
+                    jdbcTemplate.execute("ALTER TABLE " + target + " ADD CONSTRAINT " + fk[1] + " " + fk[2] + " NOT VALID");
+                }
+                pending.append(String.join("\t", fk)).append('\n');
+            }
+
+            jdbcTemplate.update("UPDATE key_migrations SET status = 'SWAPPED', swapped_at = NOW(), pending_constraints = ?, " +
+                    "updated_at = NOW() WHERE table_name = ? AND column_name = ?", pending.toString(), TABLE, COLUMN);
+        });
+    }
+
+    // ======================
+    // STEP 5: validate the re-added FKs (SHARE UPDATE EXCLUSIVE, writes continue)
+    // ======================
+    private void validateConstraints() {
+        String pending = jdbcTemplate.queryForObject(
+                "SELECT pending_constraints FROM key_migrations WHERE table_name = ? AND column_name = ?", String.class, TABLE, COLUMN);
+
+        if (pending != null) {
+            for (String line : pending.split("\n")) {
+                if (line.isBlank()) continue;
+                String[] fk = line.split("\t");
+                if (Boolean.parseBoolean(fk[3])) {
+                    for (String partition : leafPartitions(fk[0])) {
+                        validateIfPresent(partition, fk[1]);
+                    }
+                    // The validated per-partition constraints are attached, not re-checked
+                    Integer exists = jdbcTemplate.queryForObject(
+                            "SELECT count(*) FROM pg_constraint WHERE conname = ? AND conrelid = ?::regclass", Integer.class, fk[1], fk[0]);
+                    if (exists == null || exists == 0) {
+                        jdbcTemplate.execute("ALTER TABLE " + fk[0] + " ADD CONSTRAINT " + fk[1] + " " + fk[2]);
+                    }
+                } else {
+                    validateIfPresent(fk[0], fk[1]);
+                }
+            }
+        }
+
+        jdbcTemplate.update("UPDATE key_migrations SET status = 'VALIDATED', pending_constraints = NULL, last_error = NULL, " +
+                "updated_at = NOW() WHERE table_name = ? AND column_name = ?", TABLE, COLUMN);
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private void startWorker() {
+        running = true;
+        Thread worker = new Thread(this::run, "bigint-key-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private String currentStatus() {
+        List<String> rows = jdbcTemplate.queryForList(
+                "SELECT status FROM key_migrations WHERE table_name = ? AND column_name = ?", String.class, TABLE, COLUMN);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private boolean shadowColumnExists() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM information_schema.columns WHERE table_name = 'groups' AND column_name = ?", Integer.class, SHADOW);
+        return count != null && count > 0;
+    }
+
+    private void validateIfPresent(String table, String constraint) {
+        Integer notValid = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_constraint WHERE conname = ? AND conrelid = ?::regclass AND NOT convalidated",
+                Integer.class, constraint, table);
+        if (notValid != null && notValid > 0) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " VALIDATE CONSTRAINT " + constraint);
+        }
+    }
+
+    private List<String> leafPartitions(String table) {
+        return new ArrayList<>(jdbcTemplate.queryForList(
+                "SELECT relid::regclass::text FROM pg_partition_tree(?::regclass) WHERE isleaf", String.class, table));
+    }
+
+    private String columnType(String table, String column) {
+        List<String> types = jdbcTemplate.queryForList(
+                "SELECT data_type FROM information_schema.columns WHERE table_name = ? AND column_name = ?", String.class, table, column);
+        return types.isEmpty() ? null : types.get(0);
+    }
+
+    private String sequenceType(String sequence) {
+        List<String> types = jdbcTemplate.queryForList(
+                "SELECT data_type::text FROM pg_sequences WHERE sequencename = ?", String.class, sequence);
+        return types.isEmpty() ? null : types.get(0);
+    }
+}
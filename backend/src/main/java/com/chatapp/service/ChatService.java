@@ -1,6 +1,8 @@
 package com.chatapp.service;
 
-import com.chatapp.model.Group;
+import com.chatapp.cache.GroupAccessCache;
+import com.chatapp.cache.GroupAccessCache.GroupMeta;
+import com.chatapp.datasource.ReadYourWrites;
 import com.chatapp.model.GroupMember;
 import com.chatapp.model.Message;
 import com.chatapp.model.MessageDelivery;
@@ -14,13 +16,13 @@ import com.chatapp.repository.MediaMessageRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
-import jakarta.transaction.Transactional;
 import java.util.*;
 import java.time.format.DateTimeFormatter;
 import java.time.ZoneOffset;
@@ -46,13 +48,23 @@ public class ChatService {
     @Autowired
     private GroupRepository groupRepository;
 
+    @Autowired
+    private GroupAccessCache groupAccessCache;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
     @Autowired
     private ObjectMapper mapper;
 
+    @Autowired
+    private MessageClientIds messageClientIds;
+
     /**
      * Handle incoming WebSocket message
      * Payload:
-     * { type: "message", sender_id, group_id, content?, media_id? }
+     * { type: "message", sender_id, group_id, content?, media_id?, client_id? }
+     * A client_id that was already used by the sender is a resend and is dropped.
      */
     @Transactional
     public void handleIncomingMessage(Map<String, Object> payload, Map<Long, WebSocketSession> onlineUsers)
@@ -71,6 +83,11 @@ public class ChatService {
         if (groupId == null)
             return;
 
+        String clientId = MessageClientIds.clientIdOf(payload.get("client_id"));
+        if (clientId != null && !messageClientIds.claim(senderId, clientId)) {
+            return;
+        }
+
         // Build message
         Message msg = new Message();
         msg.setSenderId(senderId);
@@ -84,32 +101,80 @@ public class ChatService {
             msg.setMediaMessage(mediaMessage);
         }
 
-        // Save message
+        List<WebSocketSession> onlineRecipients = saveWithDeliveries(msg, onlineUsers);
+        if (clientId != null) {
+            messageClientIds.bind(senderId, clientId, msg);
+        }
+
+        // Deliver to online recipients; the payload is the same for all of them
+        if (!onlineRecipients.isEmpty()) {
+            Map<String, Object> dto = buildMessagePayload(msg, true);
+            // Add message type to payload
+            dto.put("type", messageType);
+            TextMessage outgoing = new TextMessage(mapper.writeValueAsString(dto));
+            for (WebSocketSession ws : onlineRecipients) {
+                ws.sendMessage(outgoing);
+            }
+        }
+    }
+
+    /** A saved message and the sessions of the recipients who were online for it */
+    public record SavedMessage(Message message, List<WebSocketSession> onlineRecipients) {}
+
+    /**
+     * Save a message whose attachment arrived inline on the WebSocket (already
+     * stored through MediaService). Sending is left to the caller, which
+     * forwards the attachment bytes with it. Returns null when clientId was
+     * already used by the sender (a resend racing the first attempt).
+     */
+    @Transactional
+    public SavedMessage saveInlineMediaMessage(Long senderId, Long groupId, String content, MediaMessage media,
+                                               String clientId, Map<Long, WebSocketSession> onlineUsers) {
+        if (clientId != null && !messageClientIds.claim(senderId, clientId)) {
+            return null;
+        }
+        Message msg = new Message();
+        msg.setSenderId(senderId);
+        msg.setGroupId(groupId);
+        msg.setContent(content);
+        msg.setMediaMessage(media);
+        SavedMessage saved = new SavedMessage(msg, saveWithDeliveries(msg, onlineUsers));
+        if (clientId != null) {
+            messageClientIds.bind(senderId, clientId, msg);
+        }
+        return saved;
+    }
+
+    /** Save the message and one delivery row per recipient; returns the recipients online right now */
+    private List<WebSocketSession> saveWithDeliveries(Message msg, Map<Long, WebSocketSession> onlineUsers) {
+        Long senderId = msg.getSenderId();
         messageRepository.save(msg);
+        readYourWrites.recordWrite(senderId);
 
         // Fetch group members
-        List<GroupMember> members = groupMemberRepository.findByGroupId(groupId);
-
-        for (GroupMember gm : members) {
-            if (gm.getUserId().equals(senderId))
+        Set<Long> memberIds = groupAccessCache.getMemberIds(msg.getGroupId());
+
+        // One delivery row per recipient, written as a single JDBC batch. Users are
+        // referenced by id only, so no SELECT per recipient either.
+        List<MessageDelivery> deliveries = new ArrayList<>(memberIds.size());
+        List<WebSocketSession> onlineRecipients = new ArrayList<>();
+        for (Long recipientId : memberIds) {
+            if (recipientId.equals(senderId))
                 continue;
 
-            Long recipientId = gm.getUserId();
-            MessageDelivery delivery = new MessageDelivery(msg, userRepository.findById(recipientId).orElseThrow());
+            MessageDelivery delivery = new MessageDelivery(msg, userRepository.getReferenceById(recipientId));
 
-            boolean delivered = onlineUsers.containsKey(recipientId) && onlineUsers.get(recipientId).isOpen();
+            WebSocketSession ws = onlineUsers.get(recipientId);
+            boolean delivered = ws != null && ws.isOpen();
             delivery.setDelivered(delivered);
-            messageDeliveryRepository.save(delivery);
+            deliveries.add(delivery);
 
-            // Deliver if online
             if (delivered) {
-                Map<String, Object> dto = buildMessagePayload(msg, true);
-                // Add message type to payload
-                dto.put("type", messageType);
-                WebSocketSession ws = onlineUsers.get(recipientId);
-                ws.sendMessage(new TextMessage(mapper.writeValueAsString(dto)));
+                onlineRecipients.add(ws);
             }
         }
+        messageDeliveryRepository.saveAll(deliveries);
+        return onlineRecipients;
     }
 
     /**
@@ -127,12 +192,14 @@ public class ChatService {
      */
     public void markAsDelivered(MessageDelivery delivery) {
         delivery.setDelivered(true);
-        messageDeliveryRepository.save(delivery);
+        messageDeliveryRepository.markDelivered(
+                delivery.getId().getMessageId(), delivery.getId().getUserId(), delivery.getCreatedAt());
     }
 
     /**
      * Fetch message history for a group with pagination
      */
+    @Transactional(readOnly = true)
     public List<Map<String, Object>> getGroupMessageHistory(Long groupId, int limit, int offset) {
         Pageable pageable = PageRequest.of(offset / limit, limit);
         List<Message> messages = messageRepository.findByGroupIdOrderByCreatedAtAsc(groupId, pageable);
@@ -144,16 +211,15 @@ public class ChatService {
         return dtoList;
     }
 
-    // Leave Group for User
     // Leave Group for User
     @Transactional
     public void leaveGroup(Long userId, Long groupId) {
         // Fetch group
-        Group group = groupRepository.findById(groupId)
+        GroupMeta group = groupAccessCache.getGroupMeta(groupId)
                 .orElseThrow(() -> new RuntimeException("Group not found"));
 
         // Check if user is the admin
-        if (group.getCreatedBy().equals(userId)) {
+        if (group.createdBy().equals(userId)) {
             throw new RuntimeException("Admin cannot leave the group. Transfer ownership first.");
         }
 
@@ -163,22 +229,23 @@ public class ChatService {
 
         // Delete membership
         groupMemberRepository.delete(membership);
+        groupAccessCache.invalidateMembers(groupId);
     }
 
     // Add to Group
     @Transactional
     public void addMemberToGroup(Long adminId, Long groupId, Long newUserId) {
         // Fetch group
-        Group group = groupRepository.findById(groupId)
+        GroupMeta group = groupAccessCache.getGroupMeta(groupId)
                 .orElseThrow(() -> new RuntimeException("Group not found"));
 
         // Check admin
-        if (!group.getCreatedBy().equals(adminId)) {
+        if (!group.createdBy().equals(adminId)) {
             throw new RuntimeException("Only the admin can add members");
         }
 
         // Check if already a member
-        boolean alreadyMember = groupMemberRepository.existsByGroupIdAndUserId(groupId, newUserId);
+        boolean alreadyMember = groupAccessCache.isMember(groupId, newUserId);
         if (alreadyMember) {
             throw new RuntimeException("User is already a member of the group");
         }
@@ -188,7 +255,7 @@ public class ChatService {
         newMember.setGroupId(groupId);
         newMember.setUserId(newUserId);
         groupMemberRepository.save(newMember);
-
+        groupAccessCache.invalidateMembers(groupId);
     }
 
     // Delete Group (admin only)
@@ -202,6 +269,7 @@ public class ChatService {
         
         // Delete the group itself
         groupRepository.deleteById(groupId);
+        groupAccessCache.invalidateGroup(groupId);
     }
 
     // -----------------------------
@@ -0,0 +1,358 @@
+package com.chatapp.service;
+
+import com.chatapp.cache.GroupAccessCache;
+import com.chatapp.model.MediaMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resumable uploads: create a session, PUT chunks (any order, in parallel),
+ * then complete. The target file is preallocated as {@code upload_<id>.part} and
+ * each chunk is written at its own offset with positional writes, so chunks
+ * never need reassembly. Which chunks have arrived is a bitmap on the session
+ * row, updated only after a chunk is fully on disk, so an interrupted client
+ * (or a restarted backend) resumes from GET status instead of starting over.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public record UploadSession(UUID uploadId, Long userId, Long groupId, String fileName, String fileType,
+                                String iv, long totalSize, int chunkSize, int chunkCount, byte[] received,
+                                int receivedCount, String partPath) {
+
+        public boolean hasChunk(int index) {
+            return (received[index >>> 3] & (1 << (index & 7))) != 0;
+        }
+
+        public List<Integer> missingChunks() {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = 0; i < chunkCount; i++) {
+                if (!hasChunk(i)) missing.add(i);
+            }
+            return missing;
+        }
+
+        public long chunkLength(int index) {
+            long offset = (long) index * chunkSize;
+            return Math.min(chunkSize, totalSize - offset);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MediaService mediaService;
+    private final GroupAccessCache groupAccessCache;
+
+    @Value("${chatapp.media.uploads.min-chunk-bytes:262144}")
+    private int minChunkBytes;
+
+    @Value("${chatapp.media.uploads.max-chunk-bytes:33554432}")
+    private int maxChunkBytes;
+
+    @Value("${chatapp.media.uploads.stale-after-hours:24}")
+    private long staleAfterHours;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong chunksReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public ChunkedUploadService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                MediaService mediaService,
+                                GroupAccessCache groupAccessCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.mediaService = mediaService;
+        this.groupAccessCache = groupAccessCache;
+    }
+
+    // ======================
+    // CREATE
+    // ======================
+    public UploadSession create(Long userId, Long groupId, String fileName, String fileType, String iv,
+                                long totalSize, int chunkSize) throws IOException {
+        if (iv == null || iv.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "IV (Initialization Vector) is required for encryption");
+        }
+        if (totalSize <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "totalSize must be positive");
+        }
+        if (totalSize > mediaService.getMaxUploadBytes()) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Upload exceeds " + mediaService.getMaxUploadBytes() + " bytes");
+        }
+        if (chunkSize < minChunkBytes || chunkSize > maxChunkBytes) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "chunkSize must be between " + minChunkBytes + " and " + maxChunkBytes);
+        }
+        if (!groupAccessCache.isMember(groupId, userId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not a member of this group");
+        }
+
+        UUID uploadId = UUID.randomUUID();
+        String safeName = MediaService.sanitizeFileName(fileName);
+        String type = fileType == null || fileType.isBlank() ? "application/octet-stream" : fileType;
+        int chunkCount = (int) ((totalSize + chunkSize - 1) / chunkSize);
+        byte[] received = new byte[(chunkCount + 7) / 8];
+
+        // Preallocate the full length up front; chunks then land at their offsets
+        Path partPath = mediaService.groupDirectory(groupId).resolve("upload_" + uploadId + ".part");
+        try (RandomAccessFile file = new RandomAccessFile(partPath.toFile(), "rw")) {
+            file.setLength(totalSize);
+        }
+
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO media_upload_sessions (upload_id, user_id, group_id, file_name, file_type, iv, " +
+                    "total_size, chunk_size, chunk_count, received, part_path) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    uploadId, userId, groupId, safeName, type, iv, totalSize, chunkSize, chunkCount, received,
+                    partPath.toString());
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(partPath);
+            throw e;
+        }
+
+        created.incrementAndGet();
+        return new UploadSession(uploadId, userId, groupId, safeName, type, iv, totalSize, chunkSize, chunkCount,
+                received, 0, partPath.toString());
+    }
+
+    // ======================
+    // CHUNKS / STATUS
+    // ======================
+    /** Write one chunk at its offset; the body must be exactly the chunk's length. Returns the updated session. */
+    public UploadSession writeChunk(UUID uploadId, Long userId, int index, InputStream in) throws IOException {
+        UploadSession session = get(uploadId, userId);
+        if (index < 0 || index >= session.chunkCount()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk index out of range");
+        }
+
+        long expected = session.chunkLength(index);
+        long position = (long) index * session.chunkSize();
+        long written = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer chunk = ByteBuffer.wrap(buffer);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(session.partPath()), StandardOpenOption.WRITE)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                if (written + n > expected) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Chunk " + index + " must be exactly " + expected + " bytes");
+                }
+                chunk.clear().limit(n);
+                while (chunk.hasRemaining()) {
+                    written += channel.write(chunk, position + written);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found");
+        }
+        if (written != expected) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Chunk " + index + " must be exactly " + expected + " bytes, got " + written);
+        }
+
+        // Mark the chunk only once its bytes are written; counting uses the bit's previous value
+        int updated = jdbcTemplate.update(
+                "UPDATE media_upload_sessions " +
+                "SET received = set_bit(received, ?, 1), " +
+                "    received_count = received_count + 1 - get_bit(received, ?), " +
+                "    updated_at = NOW() " +
+                "WHERE upload_id = ?",
+                index, index, uploadId);
+        if (updated == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found");
+        }
+
+        chunksReceived.incrementAndGet();
+        bytesReceived.addAndGet(written);
+        return get(uploadId, userId);
+    }
+
+    public UploadSession get(UUID uploadId, Long userId) {
+        List<UploadSession> rows = jdbcTemplate.query(
+                "SELECT * FROM media_upload_sessions WHERE upload_id = ?",
+                (rs, i) -> new UploadSession(
+                        rs.getObject("upload_id", UUID.class),
+                        rs.getLong("user_id"),
+                        rs.getLong("group_id"),
+                        rs.getString("file_name"),
+                        rs.getString("file_type"),
+                        rs.getString("iv"),
+                        rs.getLong("total_size"),
+                        rs.getInt("chunk_size"),
+                        rs.getInt("chunk_count"),
+                        rs.getBytes("received"),
+                        rs.getInt("received_count"),
+                        rs.getString("part_path")),
+                uploadId);
+        if (rows.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found");
+        }
+        UploadSession session = rows.get(0);
+        if (!session.userId().equals(userId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not your upload");
+        }
+        return session;
+    }
+
+    // ======================
+    // COMPLETE / ABORT
+    // ======================
+    /**
+     * Verify every chunk arrived, checksum the assembled file, move it to its
+     * final name and register it as media. The session row is deleted in the
+     * same transaction as the media insert; if that fails the file is moved
+     * back so the client can retry.
+     */
+    public MediaMessage complete(UUID uploadId, Long userId, String expectedChecksum) throws IOException {
+        UploadSession session = get(uploadId, userId);
+        if (session.receivedCount() < session.chunkCount()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Missing chunks: " + session.missingChunks());
+        }
+
+        Path partPath = Paths.get(session.partPath());
+        String checksum;
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            checksum = checksum(channel);
+        } catch (NoSuchFileException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload already completed");
+        }
+        if (expectedChecksum != null && !expectedChecksum.isBlank() && !expectedChecksum.equalsIgnoreCase(checksum)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Checksum mismatch: expected " + expectedChecksum + ", got " + checksum);
+        }
+
+        // Same naming as direct uploads, or adopted into the blob store when content-addressed
+        String blobChecksum = mediaService.usesBlobStore() ? checksum : null;
+        String key;
+        try {
+            key = mediaService.placeFile(partPath,
+                    MediaService.layoutKey(session.groupId(), MediaService.storedName(session.fileName())),
+                    checksum, session.totalSize());
+        } catch (NoSuchFileException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload already completed");
+        }
+
+        MediaMessage media;
+        try {
+            media = transactionTemplate.execute(status -> {
+                int deleted = jdbcTemplate.update("DELETE FROM media_upload_sessions WHERE upload_id = ?", uploadId);
+                if (deleted == 0) return null; // aborted or expired meanwhile
+                return mediaService.saveMetadata(session.fileName(), session.fileType(), session.totalSize(),
+                        key, session.groupId(), session.iv(), checksum, blobChecksum);
+            });
+        } catch (RuntimeException e) {
+            // Local files go back to the part file so the session can be completed again. Otherwise the
+            // bytes are gone from this node (or belong to the blob store, swept if never referenced).
+            if (blobChecksum != null || !mediaService.unplaceFile(key, partPath)) {
+                jdbcTemplate.update("DELETE FROM media_upload_sessions WHERE upload_id = ?", uploadId);
+            }
+            throw e;
+        }
+        if (media == null) {
+            if (blobChecksum == null) mediaService.deleteStored(key);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found");
+        }
+        completed.incrementAndGet();
+        return media;
+    }
+
+    public void abort(UUID uploadId, Long userId) throws IOException {
+        UploadSession session = get(uploadId, userId);
+        jdbcTemplate.update("DELETE FROM media_upload_sessions WHERE upload_id = ?", uploadId);
+        Files.deleteIfExists(Paths.get(session.partPath()));
+    }
+
+    // ======================
+    // STALE SESSION GC
+    // ======================
+    @Scheduled(fixedDelayString = "${chatapp.media.uploads.gc-interval-ms:3600000}",
+               initialDelayString = "${chatapp.media.uploads.gc-initial-delay-ms:120000}")
+    public void expireStaleSessions() {
+        try {
+            Timestamp cutoff = Timestamp.from(Instant.now().minusSeconds(staleAfterHours * 3600));
+            List<String> partPaths = jdbcTemplate.queryForList(
+                    "DELETE FROM media_upload_sessions WHERE updated_at < ? RETURNING part_path",
+                    String.class, cutoff);
+            for (String partPath : partPaths) {
+                try {
+                    Files.deleteIfExists(Paths.get(partPath));
+                } catch (IOException e) {
+                    log.warn("Could not delete stale upload {}: {}", partPath, e.getMessage());
+                }
+            }
+            expired.addAndGet(partPaths.size());
+            if (!partPaths.isEmpty()) {
+                log.info("Expired {} stale upload sessions", partPaths.size());
+            }
+        } catch (Exception e) {
+            log.warn("Stale upload cleanup failed", e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("created", created.get());
+        stats.put("chunksReceived", chunksReceived.get());
+        stats.put("bytesReceived", bytesReceived.get());
+        stats.put("completed", completed.get());
+        stats.put("expired", expired.get());
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private static String checksum(FileChannel channel) throws IOException {
+        MessageDigest sha256 = MediaService.sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = 0;
+        int n;
+        while ((n = channel.read(buffer, position)) != -1) {
+            buffer.flip();
+            sha256.update(buffer);
+            buffer.clear();
+            position += n;
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+}
@@ -0,0 +1,144 @@
+package com.chatapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes message_delivery rows that have been delivered. Nothing reads them
+ * once delivered, so left alone they only grow the table. Rows are removed in
+ * bounded chunks, each in its own short transaction, with a pause in between
+ * so the job never holds long locks or floods WAL.
+ */
+@Service
+public class DeliveryCompactionService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeliveryCompactionService.class);
+
+    // Delivery rows are keyed by (message_id, user_id, created_at); created_at
+    // lets each delete go straight to the right partition.
+    private static final String DELETE_CHUNK_SQL =
+            "WITH doomed AS (" +
+            "    SELECT message_id, user_id, created_at FROM message_delivery " +
+            "    WHERE delivered AND created_at < now() - make_interval(mins => ?) " +
+            "    LIMIT ?" +
+            ") " +
+            "DELETE FROM message_delivery d USING doomed " +
+            "WHERE d.message_id = doomed.message_id " +
+            "  AND d.user_id = doomed.user_id " +
+            "  AND d.created_at = doomed.created_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${chatapp.delivery-compaction.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chatapp.delivery-compaction.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${chatapp.delivery-compaction.max-chunks-per-run:200}")
+    private int maxChunksPerRun;
+
+    @Value("${chatapp.delivery-compaction.chunk-pause-ms:50}")
+    private long chunkPauseMs;
+
+    // Only rows of messages at least this old are compacted
+    @Value("${chatapp.delivery-compaction.min-age-minutes:10}")
+    private int minAgeMinutes;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong totalDeleted = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public DeliveryCompactionService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${chatapp.delivery-compaction.interval-ms:300000}",
+               initialDelayString = "${chatapp.delivery-compaction.initial-delay-ms:60000}")
+    public void compact() {
+        if (!enabled || !running.compareAndSet(false, true)) return;
+
+        long started = System.currentTimeMillis();
+        long deleted = 0;
+        int chunks = 0;
+        String error = null;
+
+        try {
+            while (chunks < maxChunksPerRun) {
+                int n = jdbcTemplate.update(DELETE_CHUNK_SQL, minAgeMinutes, chunkSize);
+                deleted += n;
+                chunks++;
+                if (n < chunkSize) break;
+                Thread.sleep(chunkPauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            error = e.getMessage();
+            log.warn("Delivery compaction failed", e);
+        } finally {
+            running.set(false);
+        }
+
+        totalDeleted.addAndGet(deleted);
+        if (deleted > 0) {
+            log.info("Delivery compaction: deleted {} delivered rows in {} chunks", deleted, chunks);
+        }
+
+        Map<String, Object> run = new HashMap<>();
+        run.put("deletedRows", deleted);
+        run.put("chunks", chunks);
+        run.put("durationMs", System.currentTimeMillis() - started);
+        run.put("hitChunkLimit", chunks >= maxChunksPerRun);
+        run.put("undeliveredBacklog", countUndelivered());
+        run.put("estimatedTableRows", estimateTableRows());
+        run.put("error", error);
+        run.put("ranAt", Instant.now().toString());
+        lastRun = run;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>(lastRun);
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("totalDeletedRows", totalDeleted.get());
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+
+    /** Exact count of rows still waiting for delivery (served by the partial index) */
+    private Long countUndelivered() {
+        try {
+            return jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM message_delivery WHERE NOT delivered", Long.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Planner estimate of all rows across partitions; a full count would scan the table */
+    private Long estimateTableRows() {
+        try {
+            return jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(sum(GREATEST(c.reltuples, 0)), 0)::bigint FROM pg_inherits i " +
+                    "JOIN pg_class c ON c.oid = i.inhrelid " +
+                    "JOIN pg_class p ON p.oid = i.inhparent " +
+                    "WHERE p.relname = 'message_delivery'", Long.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.chatapp.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Streams a group's full history as NDJSON (one message object per line).
+ * Rows are read through a forward-only JDBC cursor, so at most one fetch batch
+ * is held in memory no matter how large the group is.
+ */
+@Service
+public class HistoryExportService {
+
+    private static final String EXPORT_SQL =
+            "SELECT m.message_id, m.sender_id, u.username AS sender_name, m.group_id, m.content, m.created_at, " +
+            "       mm.media_id, mm.file_name, mm.file_type, mm.file_size, mm.iv, mm.uploaded_at " +
+            "FROM messages m " +
+            "LEFT JOIN users u ON u.user_id = m.sender_id " +
+            "LEFT JOIN media_message mm ON mm.media_id = m.media_id " +
+            "WHERE m.group_id = ? " +
+            "ORDER BY m.created_at, m.message_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final ObjectMapper mapper;
+    private final int fetchSize;
+
+    public HistoryExportService(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                ObjectMapper mapper,
+                                @Value("${chatapp.export.fetch-size:500}") int fetchSize) {
+        this.fetchSize = fetchSize;
+        this.mapper = mapper;
+
+        // The PostgreSQL driver only uses a server-side cursor when a fetch size is
+        // set and autocommit is off, hence the dedicated template + transaction.
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        // Named so replica routing treats it as an application read (see ReplicaRoutingDataSource)
+        this.readOnlyTx.setName("HistoryExportService.exportGroupHistory");
+    }
+
+    /**
+     * Write every message of the group to the stream, one JSON object per line.
+     * Returns the number of exported messages.
+     */
+    public long exportGroupHistory(Long groupId, OutputStream out) throws IOException {
+        JsonGenerator gen = mapper.getFactory().createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.setRootValueSeparator(null); // newline is written explicitly per row
+
+        long[] count = {0};
+        try {
+            readOnlyTx.executeWithoutResult(status -> jdbcTemplate.query(EXPORT_SQL, rs -> {
+                try {
+                    writeRow(gen, rs);
+                    if (++count[0] % fetchSize == 0) {
+                        gen.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, groupId));
+        } catch (UncheckedIOException e) {
+            // Client went away mid-export
+            throw e.getCause();
+        }
+
+        gen.flush();
+        gen.close();
+        return count[0];
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private void writeRow(JsonGenerator gen, ResultSet rs) throws IOException, SQLException {
+        gen.writeStartObject();
+        gen.writeNumberField("message_id", rs.getLong("message_id"));
+        gen.writeNumberField("sender_id", rs.getLong("sender_id"));
+        gen.writeStringField("sender_name", rs.getString("sender_name") != null ? rs.getString("sender_name") : "Unknown");
+        gen.writeNumberField("group_id", rs.getLong("group_id"));
+        gen.writeStringField("content", rs.getString("content"));
+        gen.writeStringField("created_at", formatTimestamp(rs.getTimestamp("created_at")));
+
+        long mediaId = rs.getLong("media_id");
+        if (!rs.wasNull()) {
+            gen.writeObjectFieldStart("media");
+            gen.writeNumberField("media_id", mediaId);
+            gen.writeStringField("file_name", rs.getString("file_name"));
+            gen.writeStringField("file_type", rs.getString("file_type"));
+            gen.writeNumberField("file_size", rs.getLong("file_size"));
+            gen.writeStringField("iv", rs.getString("iv"));
+            gen.writeStringField("uploaded_at", formatTimestamp(rs.getTimestamp("uploaded_at")));
+            gen.writeEndObject();
+        }
+
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+    }
+
+    private static String formatTimestamp(Timestamp ts) {
+        if (ts == null) return null;
+        return ts.toLocalDateTime().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_INSTANT);
+    }
+}
@@ -1,13 +1,19 @@
 package com.chatapp.service;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.chatapp.cache.VerifiedTokenCache;
 import com.chatapp.model.User;
-import com.chatapp.repository.UserRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.chatapp.security.AuthenticatedUser;
+import com.chatapp.security.TokenRevocationList;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 
 @Service
@@ -18,8 +24,16 @@ public class JwtService {
 
     private final Algorithm algorithm = Algorithm.HMAC256(SECRET_KEY);
 
-    @Autowired
-    private UserRepository userRepository;
+    // Thread-safe and reusable; building one per request is wasted work
+    private final JWTVerifier verifier = JWT.require(algorithm).build();
+
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenRevocationList revocationList;
+
+    public JwtService(VerifiedTokenCache verifiedTokenCache, TokenRevocationList revocationList) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.revocationList = revocationList;
+    }
 
     // =====================
     // Generate JWT Token
@@ -39,12 +53,7 @@ public class JwtService {
     // =====================
     public boolean validateToken(String token, User user) {
         try {
-            DecodedJWT decoded = JWT.require(algorithm)
-                    .withSubject(user.getEmail())
-                    .build()
-                    .verify(token);
-
-            return decoded.getExpiresAt().after(new Date());
+            return verify(token).email().equals(user.getEmail());
         } catch (Exception e) {
             return false;
         }
@@ -59,21 +68,73 @@ public class JwtService {
     }
 
     // =====================
-    // Validate Token & Return User ID (for WebSocket handshake)
+    // Verify Token & Build Principal (one HMAC check, no DB)
     // =====================
-    public Long validateTokenAndGetUserId(String token) throws Exception {
+    public AuthenticatedUser verify(String token) throws Exception {
+        String hash = tokenHash(token);
+        // Checked before the cache: a logged-out token may still be cached on another instance
+        if (revocationList.isRevoked(hash)) {
+            throw new Exception("Token has been revoked");
+        }
+
+        AuthenticatedUser cached = verifiedTokenCache.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+
         DecodedJWT decoded;
         try {
-            decoded = JWT.require(algorithm).build().verify(token);
+            // verify() also rejects expired tokens
+            decoded = verifier.verify(token);
         } catch (Exception e) {
             throw new Exception("Invalid JWT token");
         }
 
         Long userId = decoded.getClaim("userId").asLong();
-        if (userId == null || !userRepository.existsById(userId)) {
-            throw new Exception("User not found for token");
+        if (userId == null || decoded.getSubject() == null) {
+            throw new Exception("Token is missing user claims");
+        }
+
+        AuthenticatedUser user = new AuthenticatedUser(userId, decoded.getSubject(), decoded.getClaim("username").asString());
+        verifiedTokenCache.put(hash, user, decoded.getExpiresAt().getTime());
+        return user;
+    }
+
+    // =====================
+    // Revoke Token (logout)
+    // =====================
+    /** Returns the token's user id, or null when the token was not valid */
+    public Long revoke(String token) {
+        DecodedJWT decoded;
+        try {
+            decoded = verifier.verify(token);
+        } catch (Exception e) {
+            return null; // forged or already expired: nothing to revoke
         }
 
+        String hash = tokenHash(token);
+        Long userId = decoded.getClaim("userId").asLong();
+        revocationList.revoke(hash, userId, decoded.getExpiresAt().toInstant());
+        verifiedTokenCache.evict(hash);
         return userId;
     }
+
+    // =====================
+    // Validate Token & Return User ID (for WebSocket handshake)
+    // =====================
+    public Long validateTokenAndGetUserId(String token) throws Exception {
+        return verify(token).userId();
+    }
+
+    // =====================
+    // Token Hash (cache / storage key; never keep raw tokens around)
+    // =====================
+    public static String tokenHash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
@@ -0,0 +1,182 @@
+package com.chatapp.service;
+
+import com.chatapp.storage.MediaStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional content-addressed store (chatapp.media.dedup.enabled): uploads are
+ * kept once per distinct ciphertext under the storage key blobs/ab/cd/<sha256>, so forwarding
+ * the same encrypted file to several groups costs no extra disk.
+ *
+ * References are counted by a trigger on media_message.blob_checksum. A blob
+ * whose count reaches zero is only deleted after a grace period, and adopting
+ * a blob resets that clock, so a new reference can never race the sweeper.
+ * Adopt and sweep of the same content are serialized across all instances
+ * by a transaction-scoped advisory lock on the checksum, held over both the
+ * media_blob change and the storage call.
+ */
+@Service
+public class MediaBlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaBlobStore.class);
+    // First key of the two-key advisory lock, so blob locks cannot collide with other advisory locks
+    private static final int LOCK_NAMESPACE = 0x626c6f62; // "blob"
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MediaStorage storage;
+    private final TransactionTemplate txTemplate;
+
+    @Value("${chatapp.media.dedup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${chatapp.media.blobs.grace-period-minutes:60}")
+    private long gracePeriodMinutes;
+
+    @Value("${chatapp.media.blobs.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong dedupHits = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong swept = new AtomicLong();
+    private final AtomicLong sweptBytes = new AtomicLong();
+
+    public MediaBlobStore(JdbcTemplate jdbcTemplate, MediaStorage storage,
+                          PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storage = storage;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Take ownership of a fully written temp file whose SHA-256 is known and
+     * return the storage key to reference. If the content is already stored the
+     * temp file is discarded. The caller must then insert the media_message
+     * row with blob_checksum = checksum.
+     */
+    public String adopt(Path tempFile, String checksum, long size) throws IOException {
+        String blobKey = blobKey(checksum);
+        boolean existed;
+        try {
+            existed = txTemplate.execute(status -> {
+                lockChecksum(checksum);
+                // Register (or re-arm the grace period of) the blob before it can be referenced
+                jdbcTemplate.update(
+                        "INSERT INTO media_blob (checksum, size, blob_path) VALUES (?, ?, ?) " +
+                        "ON CONFLICT (checksum) DO UPDATE SET zero_since = " +
+                        "    CASE WHEN media_blob.ref_count = 0 THEN NOW() ELSE media_blob.zero_since END",
+                        checksum, size, blobKey);
+                try {
+                    if (storage.exists(blobKey)) {
+                        Files.deleteIfExists(tempFile);
+                        return true;
+                    }
+                    storage.put(blobKey, tempFile);
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (existed) {
+            dedupHits.incrementAndGet();
+            bytesSaved.addAndGet(size);
+        } else {
+            stored.incrementAndGet();
+        }
+        return blobKey;
+    }
+
+    // ======================
+    // ZERO-REFERENCE SWEEPER
+    // ======================
+    @Scheduled(fixedDelayString = "${chatapp.media.blobs.sweep-interval-ms:600000}",
+               initialDelayString = "${chatapp.media.blobs.sweep-initial-delay-ms:180000}")
+    public void sweepUnreferenced() {
+        try {
+            Timestamp cutoff = Timestamp.from(Instant.now().minusSeconds(gracePeriodMinutes * 60));
+            List<String> candidates = jdbcTemplate.queryForList(
+                    "SELECT checksum FROM media_blob WHERE ref_count = 0 AND zero_since < ? LIMIT ?",
+                    String.class, cutoff, sweepBatchSize);
+
+            for (String checksum : candidates) {
+                try {
+                    // The row is only deleted if the storage delete succeeds; otherwise the next sweep retries
+                    List<Map<String, Object>> deleted = txTemplate.execute(status -> {
+                        lockChecksum(checksum);
+                        // Re-checked in the DELETE: a reference may have appeared since the SELECT
+                        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                                "DELETE FROM media_blob WHERE checksum = ? AND ref_count = 0 AND zero_since < ? " +
+                                "RETURNING blob_path, size",
+                                checksum, cutoff);
+                        try {
+                            for (Map<String, Object> row : rows) {
+                                storage.delete((String) row.get("blob_path"));
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return rows;
+                    });
+                    for (Map<String, Object> row : deleted) {
+                        swept.incrementAndGet();
+                        sweptBytes.addAndGet(((Number) row.get("size")).longValue());
+                    }
+                } catch (Exception e) {
+                    log.warn("Could not sweep media blob {}: {}", checksum, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Media blob sweep failed", e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("stored", stored.get());
+        stats.put("dedupHits", dedupHits.get());
+        stats.put("bytesSaved", bytesSaved.get());
+        stats.put("swept", swept.get());
+        stats.put("sweptBytes", sweptBytes.get());
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private static String blobKey(String checksum) {
+        return "blobs/" + checksum.substring(0, 2) + "/" + checksum.substring(2, 4) + "/" + checksum;
+    }
+
+    /** Held until the surrounding transaction ends, on whichever instance took it */
+    private void lockChecksum(String checksum) {
+        jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?, hashtext(?))::text",
+                String.class, LOCK_NAMESPACE, checksum);
+    }
+}
@@ -0,0 +1,192 @@
+package com.chatapp.service;
+
+import com.chatapp.storage.LocalMediaStorage;
+import com.chatapp.storage.MediaStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves media stored in the old flat {@code <groupId>/<name>} layout into the
+ * sharded layout, a bounded batch at a time, and repoints file_path at the
+ * new storage key. Only applies to local storage; object stores have no
+ * directories to shard.
+ *
+ * Each file is first hard-linked at its new path, then the row is updated,
+ * then the old name is removed, so a download racing the migration finds the
+ * file under whichever path it read. Without hard-link support it falls back
+ * to a rename. Rows whose file is already gone are only re-flagged.
+ *
+ * A row whose move fails is retried after an exponentially growing delay
+ * (layout_retry_at) and left in the flat layout after max-attempts, with the
+ * last error kept in layout_error.
+ */
+@Service
+public class MediaLayoutMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaLayoutMigrator.class);
+    private final JdbcTemplate jdbcTemplate;
+    private final LocalMediaStorage localStorage;
+
+    @Value("${chatapp.media.layout-migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chatapp.media.layout-migration.batch-size:200}")
+    private int batchSize;
+
+    @Value("${chatapp.media.layout-migration.max-batches-per-run:50}")
+    private int maxBatchesPerRun;
+
+    @Value("${chatapp.media.layout-migration.batch-pause-ms:100}")
+    private long batchPauseMs;
+
+    @Value("${chatapp.media.layout-migration.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${chatapp.media.layout-migration.retry-backoff-ms:600000}")
+    private long retryBackoffMs;
+
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong missing = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long remaining = -1;
+    private volatile long gaveUp = 0;
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public MediaLayoutMigrator(JdbcTemplate jdbcTemplate, MediaStorage storage) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.localStorage = storage instanceof LocalMediaStorage local ? local : null;
+    }
+
+    @Scheduled(fixedDelayString = "${chatapp.media.layout-migration.interval-ms:300000}",
+               initialDelayString = "${chatapp.media.layout-migration.initial-delay-ms:90000}")
+    public void migrateBatches() {
+        if (!enabled || localStorage == null || remaining == 0) return;
+
+        long started = System.currentTimeMillis();
+        long movedThisRun = 0;
+        long lastId = 0;
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                        "SELECT media_id, group_id, file_path FROM media_message " +
+                        "WHERE layout_version = ? AND media_id > ? AND layout_attempts < ? " +
+                        "AND (layout_retry_at IS NULL OR layout_retry_at <= NOW()) ORDER BY media_id LIMIT ?",
+                        MediaService.LAYOUT_FLAT, lastId, maxAttempts, batchSize);
+                if (rows.isEmpty()) break;
+
+                for (Map<String, Object> row : rows) {
+                    lastId = ((Number) row.get("media_id")).longValue();
+                    if (migrate(lastId, ((Number) row.get("group_id")).longValue(), (String) row.get("file_path"))) {
+                        movedThisRun++;
+                    }
+                }
+                if (rows.size() < batchSize) break;
+                Thread.sleep(batchPauseMs);
+            }
+
+            remaining = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM media_message WHERE layout_version = ? AND layout_attempts < ?",
+                    Long.class, MediaService.LAYOUT_FLAT, maxAttempts);
+            gaveUp = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM media_message WHERE layout_version = ? AND layout_attempts >= ?",
+                    Long.class, MediaService.LAYOUT_FLAT, maxAttempts);
+            if (remaining == 0) {
+                log.info("Media layout migration complete ({} rows left in the flat layout after {} failed attempts)",
+                        gaveUp, maxAttempts);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Media layout migration failed", e);
+        }
+
+        Map<String, Object> run = new HashMap<>();
+        run.put("migrated", movedThisRun);
+        run.put("durationMs", System.currentTimeMillis() - started);
+        run.put("ranAt", Instant.now().toString());
+        lastRun = run;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled && localStorage != null);
+        stats.put("migrated", migrated.get());
+        stats.put("missingFiles", missing.get());
+        stats.put("failed", failed.get());
+        stats.put("remaining", remaining < 0 ? null : remaining);
+        stats.put("gaveUp", gaveUp);
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private boolean migrate(long mediaId, long groupId, String filePath) {
+        Path source = localStorage.resolve(filePath);
+        try {
+            String targetKey = MediaService.layoutKey(groupId, source.getFileName().toString());
+            Path target = localStorage.resolve(targetKey);
+            Files.createDirectories(target.getParent());
+
+            boolean linked = false;
+            if (Files.exists(source)) {
+                try {
+                    Files.createLink(target, source);
+                    linked = true;
+                } catch (UnsupportedOperationException | IOException e) {
+                    Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } else if (!Files.exists(target)) {
+                // Nothing on disk under either name; stop revisiting the row
+                missing.incrementAndGet();
+                jdbcTemplate.update("UPDATE media_message SET layout_version = ? WHERE media_id = ? AND layout_version = ?",
+                        MediaService.LAYOUT_SHARDED, mediaId, MediaService.LAYOUT_FLAT);
+                return false;
+            }
+            // else: moved by an earlier run that stopped before the update
+
+            jdbcTemplate.update(
+                    "UPDATE media_message SET file_path = ?, layout_version = ? WHERE media_id = ? AND layout_version = ?",
+                    targetKey, MediaService.LAYOUT_SHARDED, mediaId, MediaService.LAYOUT_FLAT);
+            if (linked) {
+                Files.deleteIfExists(source);
+            }
+            migrated.incrementAndGet();
+            return true;
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("Media layout migration of {} failed: {}", mediaId, e.getMessage());
+            recordFailure(mediaId, e);
+            return false;
+        }
+    }
+
+    /** Push the row's next attempt out by retry-backoff-ms * 2^attempts */
+    private void recordFailure(long mediaId, Exception e) {
+        String error = String.valueOf(e.getMessage());
+        try {
+            jdbcTemplate.update(
+                    "UPDATE media_message SET layout_attempts = layout_attempts + 1, " +
+                    "layout_retry_at = NOW() + ? * INTERVAL '1 millisecond' * power(2, layout_attempts), " +
+                    "layout_error = ? WHERE media_id = ?",
+                    retryBackoffMs, error.length() > 500 ? error.substring(0, 500) : error, mediaId);
+        } catch (Exception updateFailure) {
+            log.warn("Could not record layout migration failure of {}: {}", mediaId, updateFailure.getMessage());
+        }
+    }
+}
@@ -1,69 +1,252 @@
 package com.chatapp.service;
 
+import com.chatapp.exception.PayloadTooLargeException;
 import com.chatapp.model.MediaMessage;
 import com.chatapp.repository.MediaMessageRepository;
+import com.chatapp.storage.MediaStorage;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class MediaService {
 
+    // Copy buffer per upload; heap use is constant regardless of file size
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** media_message.layout_version: 1 = flat <groupId>/<name>, 2 = sharded <groupId>/ab/cd/<name> */
+    public static final int LAYOUT_FLAT = 1;
+    public static final int LAYOUT_SHARDED = 2;
+
     private final MediaMessageRepository mediaMessageRepository;
+    private final MediaBlobStore blobStore;
+    private final MediaStorage storage;
 
     @Value("${chatapp.upload-dir}")
     private String uploadDir;
 
-    public MediaService(MediaMessageRepository mediaMessageRepository) {
+    @Value("${chatapp.media.max-upload-bytes:524288000}")
+    private long maxUploadBytes;
+
+    @Value("${chatapp.media.presign-ttl-seconds:300}")
+    private long presignTtlSeconds;
+
+    public MediaService(MediaMessageRepository mediaMessageRepository, MediaBlobStore blobStore,
+                        MediaStorage storage) {
         this.mediaMessageRepository = mediaMessageRepository;
+        this.blobStore = blobStore;
+        this.storage = storage;
     }
 
     public MediaMessage saveFile(MultipartFile file, Long groupId, String iv) throws IOException {
-        String originalFileName = file.getOriginalFilename();
-        String timestampedName = Instant.now().toEpochMilli() + "_" + originalFileName;
+        // Size already capped by spring.servlet.multipart.max-file-size
+        try (InputStream in = file.getInputStream()) {
+            return store(in, groupId, file.getOriginalFilename(), file.getContentType(), iv, Long.MAX_VALUE);
+        }
+    }
 
-        // Base upload path (absolute)
-        Path basePath = Paths.get(uploadDir).toAbsolutePath();
+    /**
+     * Store an upload read directly from the request body. Bytes go from the
+     * stream to a local file in one pass while size and SHA-256 are computed,
+     * then handed to storage; nothing is held in memory.
+     */
+    public MediaMessage saveStream(InputStream in, Long groupId, String fileName, String fileType, String iv)
+            throws IOException {
+        return store(in, groupId, fileName, fileType, iv, maxUploadBytes);
+    }
 
-        // Group-specific folder
-        Path groupPath = basePath.resolve(String.valueOf(groupId));
-        Files.createDirectories(groupPath);
+    public long getMaxUploadBytes() {
+        return maxUploadBytes;
+    }
+
+    public MediaMessage getMediaMetadata(Long mediaId) throws IOException {
+        return mediaMessageRepository.findById(mediaId)
+                .orElseThrow(() -> new IOException("Media not found"));
+    }
+
+    /** Short-lived URL to fetch the stored bytes straight from the storage backend, if it can issue one */
+    public Optional<URI> directDownloadUrl(MediaMessage media) {
+        return storage.presignedGet(media.getFilePath(), getPresignTtl(),
+                media.getFileName(), media.getFileType());
+    }
+
+    public Duration getPresignTtl() {
+        return Duration.ofSeconds(presignTtlSeconds);
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private MediaMessage store(InputStream in, Long groupId, String fileName, String fileType, String iv,
+                               long maxBytes) throws IOException {
+        String originalFileName = sanitizeFileName(fileName);
+        String timestampedName = storedName(originalFileName);
+
+        // Written to a local spool file and handed to storage when complete, so a partial upload is never
+        // served. With the blob store the final name is the content hash, known only once the stream ends.
+        Path partPath = newSpoolFile();
+
+        MessageDigest sha256 = sha256();
+        long size = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer chunk = ByteBuffer.wrap(buffer);
+
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                size += n;
+                if (size > maxBytes) {
+                    throw new PayloadTooLargeException("Upload exceeds " + maxBytes + " bytes", maxBytes);
+                }
+                sha256.update(buffer, 0, n);
+                chunk.clear().limit(n);
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partPath);
+            throw e;
+        }
+
+        String checksum = HexFormat.of().formatHex(sha256.digest());
+        String key;
+        try {
+            key = placeFile(partPath, layoutKey(groupId, timestampedName), checksum, size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partPath);
+            throw e;
+        }
+
+        // An unreferenced blob left by a failed insert is reclaimed by the blob sweeper
+        String blobChecksum = blobStore.isEnabled() ? checksum : null;
+        try {
+            return saveMetadata(originalFileName, fileType, size, key, groupId, iv, checksum, blobChecksum);
+        } catch (RuntimeException e) {
+            if (blobChecksum == null) storage.delete(key);
+            throw e;
+        }
+    }
 
-        // File path inside group folder
-        Path filePath = groupPath.resolve(timestampedName);
+    /**
+     * Register a fully written local file that is not yet referenced: adopted
+     * into the blob store when enabled, otherwise stored under {@code key}.
+     * Returns the storage key the media row should point at.
+     */
+    String placeFile(Path writtenFile, String key, String checksum, long size) throws IOException {
+        if (blobStore.isEnabled()) {
+            return blobStore.adopt(writtenFile, checksum, size);
+        }
+        storage.put(key, writtenFile);
+        return key;
+    }
+
+    /**
+     * Undo placeFile for a non-blob upload. With local storage the file is
+     * moved back to {@code writtenFile} and true is returned; otherwise the
+     * stored copy is deleted and false is returned.
+     */
+    boolean unplaceFile(String key, Path writtenFile) throws IOException {
+        Optional<Path> local = storage.localPath(key);
+        if (local.isPresent()) {
+            Files.move(local.get(), writtenFile, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+        storage.delete(key);
+        return false;
+    }
+
+    void deleteStored(String key) throws IOException {
+        storage.delete(key);
+    }
 
-        // Save the file
-        file.transferTo(filePath.toFile());
+    boolean usesBlobStore() {
+        return blobStore.isEnabled();
+    }
 
-        // Save metadata
+    MediaMessage saveMetadata(String fileName, String fileType, long size, String key,
+                              Long groupId, String iv, String checksum, String blobChecksum) {
         MediaMessage mediaMessage = new MediaMessage();
-        mediaMessage.setFileName(originalFileName);
-        mediaMessage.setFileType(file.getContentType());
-        mediaMessage.setFileSize(file.getSize());
-        mediaMessage.setFilePath(filePath.toString());
+        mediaMessage.setFileName(fileName);
+        mediaMessage.setFileType(fileType == null || fileType.isBlank() ? "application/octet-stream" : fileType);
+        mediaMessage.setFileSize(size);
+        mediaMessage.setFilePath(key);
         mediaMessage.setUploadedAt(Instant.now());
         mediaMessage.setGroupId(groupId);
         mediaMessage.setIv(iv);
-
+        mediaMessage.setChecksum(checksum);
+        mediaMessage.setBlobChecksum(blobChecksum);
+        mediaMessage.setLayoutVersion(LAYOUT_SHARDED);
         return mediaMessageRepository.save(mediaMessage);
     }
 
-    public File getFile(Long mediaId) throws IOException {
-        MediaMessage media = mediaMessageRepository.findById(mediaId)
-                .orElseThrow(() -> new IOException("Media not found"));
+    /** Group-specific scratch folder under the absolute upload path (created if missing) */
+    Path groupDirectory(Long groupId) throws IOException {
+        Path groupPath = Paths.get(uploadDir).toAbsolutePath().resolve(String.valueOf(groupId));
+        Files.createDirectories(groupPath);
+        return groupPath;
+    }
 
-        return new File(media.getFilePath());
+    /** A fresh local file to write an upload into before it is handed to storage */
+    Path newSpoolFile() throws IOException {
+        Path tmp = Paths.get(uploadDir).toAbsolutePath().resolve("tmp");
+        Files.createDirectories(tmp);
+        return tmp.resolve(UUID.randomUUID() + ".part");
     }
 
-    public MediaMessage getMediaMetadata(Long mediaId) throws IOException {
-        return mediaMessageRepository.findById(mediaId)
-                .orElseThrow(() -> new IOException("Media not found"));
+    /**
+     * Storage key of a stored file: {@code <groupId>/ab/cd/<name>}, with ab/cd
+     * the first two bytes of the SHA-256 of the name. Derived from the name
+     * alone, so no lookup ever lists a directory, and even a very busy group
+     * spreads over 65536 small directories.
+     */
+    static String layoutKey(Long groupId, String storedName) {
+        byte[] digest = sha256().digest(storedName.getBytes(StandardCharsets.UTF_8));
+        String hex = HexFormat.of().formatHex(digest, 0, 2);
+        return groupId + "/" + hex.substring(0, 2) + "/" + hex.substring(2, 4) + "/" + storedName;
+    }
+
+    /**
+     * Name an upload is stored under. The random part keeps two uploads of the
+     * same name in the same millisecond from sharing a key, where storing the
+     * second would silently replace the first.
+     */
+    static String storedName(String originalFileName) {
+        String unique = UUID.randomUUID().toString().substring(0, 8);
+        return Instant.now().toEpochMilli() + "_" + unique + "_" + originalFileName;
+    }
+
+    /** Keep only the last path segment of a client-supplied name */
+    static String sanitizeFileName(String fileName) {
+        if (fileName == null || fileName.isBlank()) return "file";
+        Path name = Paths.get(fileName.replace('\\', '/')).getFileName();
+        return name == null ? "file" : name.toString();
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package com.chatapp.service;
+
+import com.chatapp.model.Message;
+import com.chatapp.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes sending a message idempotent on the client-supplied client_id. A
+ * client that lost the acknowledgement (socket drop, inline media timing out
+ * and falling back to an HTTP upload) sends the same client_id again, and
+ * the message is stored and delivered only once.
+ *
+ * claim() must run in the transaction that saves the message. A concurrent
+ * claim of the same id waits for that transaction and then sees the
+ * conflict, and a rolled-back save releases the id again.
+ */
+@Service
+public class MessageClientIds {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageClientIds.class);
+
+    // Matches message_client_ids.client_id; longer ids are not deduplicated
+    private static final int MAX_CLIENT_ID_LENGTH = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageRepository messageRepository;
+
+    @Value("${chatapp.messages.client-id-retention-hours:24}")
+    private long retentionHours;
+
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong purged = new AtomicLong();
+
+    public MessageClientIds(JdbcTemplate jdbcTemplate, MessageRepository messageRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messageRepository = messageRepository;
+    }
+
+    /** The client_id from a payload, or null when it is missing or too long to track */
+    public static String clientIdOf(Object raw) {
+        if (raw == null) return null;
+        String clientId = raw.toString().trim();
+        return clientId.isEmpty() || clientId.length() > MAX_CLIENT_ID_LENGTH ? null : clientId;
+    }
+
+    /** True if the caller now owns (senderId, clientId) and should save the message; false for a resend */
+    public boolean claim(Long senderId, String clientId) {
+        boolean claimed = jdbcTemplate.update(
+                "INSERT INTO message_client_ids (sender_id, client_id) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                senderId, clientId) == 1;
+        if (!claimed) duplicates.incrementAndGet();
+        return claimed;
+    }
+
+    /** Point a claimed id at the message saved for it */
+    public void bind(Long senderId, String clientId, Message message) {
+        jdbcTemplate.update(
+                "UPDATE message_client_ids SET message_id = ?, message_created_at = ? " +
+                "WHERE sender_id = ? AND client_id = ?",
+                message.getMessageId(), Timestamp.valueOf(message.getCreatedAt()), senderId, clientId);
+    }
+
+    /** The message already saved for (senderId, clientId), if any */
+    public Optional<Message> find(Long senderId, String clientId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT message_id, message_created_at FROM message_client_ids " +
+                "WHERE sender_id = ? AND client_id = ? AND message_id IS NOT NULL",
+                senderId, clientId);
+        if (rows.isEmpty()) return Optional.empty();
+        Map<String, Object> row = rows.get(0);
+        return messageRepository.findByMessageIdAndCreatedAt(
+                ((Number) row.get("message_id")).longValue(),
+                ((Timestamp) row.get("message_created_at")).toLocalDateTime());
+    }
+
+    @Scheduled(fixedDelayString = "${chatapp.messages.client-id-purge-interval-ms:3600000}",
+               initialDelayString = "${chatapp.messages.client-id-purge-initial-delay-ms:300000}")
+    public void purgeExpired() {
+        try {
+            Timestamp cutoff = Timestamp.from(Instant.now().minusSeconds(retentionHours * 3600));
+            int deleted = jdbcTemplate.update("DELETE FROM message_client_ids WHERE claimed_at < ?", cutoff);
+            purged.addAndGet(deleted);
+        } catch (Exception e) {
+            log.warn("Message client id purge failed", e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("duplicatesDropped", duplicates.get());
+        stats.put("purged", purged.get());
+        stats.put("retentionHours", retentionHours);
+        return stats;
+    }
+}
@@ -0,0 +1,171 @@
+package com.chatapp.service;
+
+import com.chatapp.storage.MediaStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes media_message rows (and their stored files) that no message
+ * references once the grace period has passed: abandoned uploads, failed
+ * sends, cancelled attachments, and media whose messages were deleted.
+ *
+ * Rows are walked in media_id order, a bounded batch per statement with a
+ * pause in between; the cursor carries over between runs so a large table is
+ * covered gradually. The row is deleted first and the file after, so a
+ * failure can leak a file but never leave a row pointing at nothing.
+ * Content-addressed blobs are released through the reference count and
+ * reclaimed by the blob sweeper.
+ */
+@Service
+public class OrphanMediaCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(OrphanMediaCollector.class);
+
+    // The NOT EXISTS is repeated in the DELETE so a reference added since the SELECT keeps the row
+    private static final String DELETE_BATCH_SQL =
+            "WITH doomed AS (" +
+            "    SELECT c.media_id FROM media_message c " +
+            "    WHERE c.media_id > ? AND c.uploaded_at < now() - make_interval(hours => ?) " +
+            "      AND NOT EXISTS (SELECT 1 FROM messages m WHERE m.media_id = c.media_id) " +
+            "    ORDER BY c.media_id LIMIT ? " +
+            "    FOR UPDATE SKIP LOCKED" +
+            ") " +
+            "DELETE FROM media_message mm USING doomed " +
+            "WHERE mm.media_id = doomed.media_id " +
+            "  AND NOT EXISTS (SELECT 1 FROM messages m WHERE m.media_id = mm.media_id) " +
+            "RETURNING mm.media_id, mm.file_path, mm.file_size, mm.blob_checksum";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MediaStorage storage;
+
+    @Value("${chatapp.media.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chatapp.media.gc.grace-period-hours:24}")
+    private int gracePeriodHours;
+
+    @Value("${chatapp.media.gc.batch-size:500}")
+    private int batchSize;
+
+    @Value("${chatapp.media.gc.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${chatapp.media.gc.batch-pause-ms:100}")
+    private long batchPauseMs;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong totalDeletedRows = new AtomicLong();
+    private final AtomicLong totalReclaimedBytes = new AtomicLong();
+    private final AtomicLong totalBlobReferencesReleased = new AtomicLong();
+    private final AtomicLong fileDeleteFailures = new AtomicLong();
+    private volatile long cursor = 0;
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public OrphanMediaCollector(JdbcTemplate jdbcTemplate, MediaStorage storage) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storage = storage;
+    }
+
+    @Scheduled(fixedDelayString = "${chatapp.media.gc.interval-ms:3600000}",
+               initialDelayString = "${chatapp.media.gc.initial-delay-ms:240000}")
+    public void collect() {
+        if (!enabled || !running.compareAndSet(false, true)) return;
+
+        long started = System.currentTimeMillis();
+        long deleted = 0;
+        long reclaimed = 0;
+        long blobReleases = 0;
+        int batches = 0;
+        String error = null;
+
+        try {
+            while (batches < maxBatchesPerRun) {
+                List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                        DELETE_BATCH_SQL, cursor, gracePeriodHours, batchSize);
+                batches++;
+
+                long maxId = cursor;
+                for (Map<String, Object> row : rows) {
+                    maxId = Math.max(maxId, ((Number) row.get("media_id")).longValue());
+                    deleted++;
+                    if (row.get("blob_checksum") != null) {
+                        blobReleases++;
+                    } else if (deleteFile((String) row.get("file_path"))) {
+                        reclaimed += ((Number) row.get("file_size")).longValue();
+                    }
+                }
+
+                if (rows.size() < batchSize) {
+                    // Reached the end (or the rest is locked); start over next run
+                    cursor = 0;
+                    break;
+                }
+                cursor = maxId;
+                Thread.sleep(batchPauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            error = e.getMessage();
+            log.warn("Orphan media collection failed", e);
+        } finally {
+            running.set(false);
+        }
+
+        totalDeletedRows.addAndGet(deleted);
+        totalReclaimedBytes.addAndGet(reclaimed);
+        totalBlobReferencesReleased.addAndGet(blobReleases);
+        if (deleted > 0) {
+            log.info("Orphan media collection: deleted {} unreferenced uploads, reclaimed {} bytes in {} batches",
+                    deleted, reclaimed, batches);
+        }
+
+        Map<String, Object> run = new HashMap<>();
+        run.put("deletedRows", deleted);
+        run.put("reclaimedBytes", reclaimed);
+        run.put("blobReferencesReleased", blobReleases);
+        run.put("batches", batches);
+        run.put("durationMs", System.currentTimeMillis() - started);
+        run.put("hitBatchLimit", batches >= maxBatchesPerRun);
+        run.put("error", error);
+        run.put("ranAt", Instant.now().toString());
+        lastRun = run;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("totalDeletedRows", totalDeletedRows.get());
+        stats.put("totalReclaimedBytes", totalReclaimedBytes.get());
+        stats.put("totalBlobReferencesReleased", totalBlobReferencesReleased.get());
+        stats.put("fileDeleteFailures", fileDeleteFailures.get());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private boolean deleteFile(String key) {
+        try {
+            storage.delete(key);
+            return true;
+        } catch (Exception e) {
+            fileDeleteFailures.incrementAndGet();
+            log.warn("Could not delete orphaned media {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.chatapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of messages and message_delivery in shape:
+ * creates upcoming months ahead of time and, when a retention period is
+ * configured, drops whole months that fell out of it (no row-by-row DELETEs).
+ *
+ * An expired month is first detached in a short transaction with a bounded
+ * lock_timeout and only then dropped, so the parent is never held under an
+ * ACCESS EXCLUSIVE lock for the length of a DROP. (DETACH ... CONCURRENTLY is
+ * not allowed while the table has a DEFAULT partition, see V20.) A detach that
+ * times out is retried on the next run.
+ */
+@Service
+public class PartitionMaintenanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+
+    public static final List<String> PARTITIONED_TABLES = List.of("messages", "message_delivery");
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate txTemplate;
+
+    @Value("${chatapp.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    // 0 = keep history forever
+    @Value("${chatapp.retention.months:0}")
+    private int retentionMonths;
+
+    @Value("${chatapp.partitions.detach-lock-timeout:2s}")
+    private String detachLockTimeout;
+
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        runMaintenance();
+    }
+
+    @Scheduled(cron = "${chatapp.partitions.maintenance-cron:0 15 3 * * *}")
+    public void runMaintenance() {
+        int created = 0;
+        List<String> dropped = new ArrayList<>();
+
+        try {
+            LocalDate today = LocalDate.now();
+            for (String table : PARTITIONED_TABLES) {
+                created += ensurePartitions(table, today, today.plusMonths(monthsAhead));
+            }
+            if (retentionMonths > 0) {
+                YearMonth cutoff = YearMonth.from(today).minusMonths(retentionMonths);
+                // Deliveries first: nothing may outlive the message it points to
+                dropped.addAll(dropPartitionsBefore("message_delivery", cutoff));
+                dropped.addAll(dropPartitionsBefore("messages", cutoff));
+                for (String table : List.of("message_delivery", "messages")) {
+                    // Stray rows of expired months that landed in the DEFAULT partition
+                    jdbcTemplate.update("DELETE FROM \"" + table + "_default\" WHERE created_at < ?",
+                            cutoff.atDay(1).atStartOfDay());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Partition maintenance failed", e);
+        }
+
+        if (created > 0 || !dropped.isEmpty()) {
+            log.info("Partition maintenance: created {} partitions, dropped {}", created, dropped);
+        }
+
+        Map<String, Object> run = new HashMap<>();
+        run.put("createdPartitions", created);
+        run.put("droppedPartitions", dropped);
+        run.put("retentionMonths", retentionMonths);
+        run.put("ranAt", java.time.Instant.now().toString());
+        lastRun = run;
+    }
+
+    /**
+     * Create any missing monthly partitions of the table covering [from, to].
+     * Also used by the importer before copying historic rows.
+     */
+    public int ensurePartitions(String table, LocalDate from, LocalDate to) {
+        Integer created = jdbcTemplate.queryForObject(
+                "SELECT create_monthly_partitions(?, ?, ?)", Integer.class, table, from, to);
+        return created != null ? created : 0;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>(lastRun);
+        // Should stay near zero; rows here mean monthly partitions are missing
+        for (String table : PARTITIONED_TABLES) {
+            stats.put(table + "DefaultPartitionRows", jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM \"" + table + "_default\"", Long.class));
+        }
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private List<String> dropPartitionsBefore(String table, YearMonth cutoff) {
+        Pattern partitionName = Pattern.compile("^" + Pattern.quote(table) + "_(\\d{6})$");
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ?", String.class, table);
+
+        List<String> dropped = new ArrayList<>();
+        for (String partition : partitions) {
+            Matcher m = partitionName.matcher(partition);
+            if (!m.matches()) continue;
+
+            YearMonth month = YearMonth.parse(m.group(1), SUFFIX);
+            if (month.isBefore(cutoff)) {
+                try {
+                    txTemplate.executeWithoutResult(status -> {
+                        jdbcTemplate.execute("SET LOCAL lock_timeout = '" + detachLockTimeout + "'");
+                        jdbcTemplate.execute("ALTER TABLE \"" + table + "\" DETACH PARTITION \"" + partition + "\"");
+                    });
+                } catch (Exception e) {
+                    log.warn("Could not detach {} (retrying next run)", partition, e);
+                    continue;
+                }
+                // Standalone now: dropping it no longer locks the parent
+                jdbcTemplate.execute("DROP TABLE IF EXISTS \"" + partition + "\"");
+                dropped.add(partition);
+            }
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,241 @@
+package com.chatapp.service;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind store for login sessions. Login only enqueues the row; a
+ * scheduled flusher inserts queued sessions in JDBC batches, so a login burst
+ * costs one round trip per batch instead of one per login. When the queue is
+ * full the row is written synchronously (backpressure instead of loss).
+ *
+ * A batch that fails goes back to the head of the queue and is retried on the
+ * next flush, row by row so a single bad row cannot hold the rest back. Rows
+ * are given up only after max-flush-attempts, or when the queue has filled up
+ * in the meantime.
+ *
+ * Authentication itself never reads sessions (the JWT and the revocation list
+ * decide), so a session being briefly in the queue is invisible to users.
+ */
+@Service
+public class SessionStore {
+
+    private record PendingSession(Long userId, String tokenHash, LocalDateTime createdAt, LocalDateTime expiresAt,
+                                  int attempts) {
+        PendingSession retried() {
+            return new PendingSession(userId, tokenHash, createdAt, expiresAt, attempts + 1);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SessionStore.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO sessions (user_id, token_hash, created_at, expires_at) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (token_hash) DO NOTHING";
+
+    private static final String SWEEP_CHUNK_SQL =
+            "DELETE FROM sessions WHERE session_id IN (" +
+            "    SELECT session_id FROM sessions WHERE expires_at < ? LIMIT ?" +
+            ")";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingDeque<PendingSession> pending;
+
+    @Value("${chatapp.sessions.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    @Value("${chatapp.sessions.max-flush-attempts:20}")
+    private int maxFlushAttempts;
+
+    @Value("${chatapp.sessions.sweep-chunk-size:5000}")
+    private int sweepChunkSize;
+
+    @Value("${chatapp.sessions.sweep-chunk-pause-ms:50}")
+    private long sweepChunkPauseMs;
+
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushBatches = new AtomicLong();
+    private final AtomicLong synchronousWrites = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final AtomicLong retriedRows = new AtomicLong();
+    private final AtomicLong sweptRows = new AtomicLong();
+    private volatile Map<String, Object> lastSweep = Map.of();
+
+    public SessionStore(JdbcTemplate jdbcTemplate,
+                        @Value("${chatapp.sessions.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pending = new LinkedBlockingDeque<>(queueCapacity);
+    }
+
+    // ======================
+    // WRITE / LOOKUP / DELETE
+    // ======================
+    public void save(Long userId, String tokenHash, LocalDateTime createdAt, LocalDateTime expiresAt) {
+        PendingSession session = new PendingSession(userId, tokenHash, createdAt, expiresAt, 0);
+        if (!pending.offer(session)) {
+            synchronousWrites.incrementAndGet();
+            insert(List.of(session));
+        }
+    }
+
+    /** True when the session is still waiting to be written */
+    public boolean isPending(String tokenHash) {
+        return pending.stream().anyMatch(s -> s.tokenHash().equals(tokenHash));
+    }
+
+    /**
+     * Remove a session wherever it is. Synchronized with flush() so a session
+     * drained by an in-flight flush cannot be re-inserted after this delete.
+     */
+    public synchronized void delete(String tokenHash) {
+        pending.removeIf(s -> s.tokenHash().equals(tokenHash));
+        jdbcTemplate.update("DELETE FROM sessions WHERE token_hash = ?", tokenHash);
+    }
+
+    // ======================
+    // FLUSH
+    // ======================
+    @Scheduled(fixedDelayString = "${chatapp.sessions.flush-interval-ms:200}")
+    public synchronized void flush() {
+        List<PendingSession> batch = new ArrayList<>(flushBatchSize);
+        while (pending.drainTo(batch, flushBatchSize) > 0) {
+            boolean retrying = batch.stream().anyMatch(s -> s.attempts() > 0);
+            List<PendingSession> failed = retrying ? insertEach(batch) : insertBatch(batch);
+            batch.clear();
+            if (!failed.isEmpty()) {
+                requeue(failed);
+                // The database is likely unavailable; try again on the next flush
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // ======================
+    // EXPIRY SWEEPER
+    // ======================
+    @Scheduled(fixedDelayString = "${chatapp.sessions.sweep-interval-ms:600000}",
+               initialDelayString = "${chatapp.sessions.sweep-initial-delay-ms:60000}")
+    public void sweepExpired() {
+        long started = System.currentTimeMillis();
+        Timestamp now = Timestamp.from(Instant.now());
+        long deleted = 0;
+        try {
+            int n;
+            do {
+                n = jdbcTemplate.update(SWEEP_CHUNK_SQL, now, sweepChunkSize);
+                deleted += n;
+                if (n == sweepChunkSize) Thread.sleep(sweepChunkPauseMs);
+            } while (n == sweepChunkSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Session sweep failed: {}", e.getMessage());
+        }
+
+        sweptRows.addAndGet(deleted);
+        Map<String, Object> run = new HashMap<>();
+        run.put("deletedRows", deleted);
+        run.put("durationMs", System.currentTimeMillis() - started);
+        run.put("ranAt", Instant.now().toString());
+        lastSweep = run;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("flushBatches", flushBatches.get());
+        stats.put("synchronousWrites", synchronousWrites.get());
+        stats.put("failedRows", failedRows.get());
+        stats.put("retriedRows", retriedRows.get());
+        stats.put("sweptRows", sweptRows.get());
+        stats.put("lastSweep", lastSweep);
+        return stats;
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    /** One JDBC batch; on failure the whole batch is returned for a retry */
+    private List<PendingSession> insertBatch(List<PendingSession> batch) {
+        try {
+            insert(batch);
+            flushBatches.incrementAndGet();
+            return List.of();
+        } catch (Exception e) {
+            log.warn("Session flush failed for {} sessions, will retry: {}", batch.size(), e.getMessage());
+            return new ArrayList<>(batch);
+        }
+    }
+
+    /** Row by row, so only the rows that fail are returned */
+    private List<PendingSession> insertEach(List<PendingSession> batch) {
+        List<PendingSession> failed = new ArrayList<>();
+        for (PendingSession session : batch) {
+            try {
+                insert(List.of(session));
+            } catch (Exception e) {
+                failed.add(session);
+                log.debug("Session insert failed for user {}: {}", session.userId(), e.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Put failed rows back at the head of the queue in their original order.
+     * A row whose token is queued again already (a newer write) is not re-added.
+     */
+    private void requeue(List<PendingSession> failed) {
+        Set<String> queued = new HashSet<>();
+        pending.forEach(s -> queued.add(s.tokenHash()));
+        int dropped = 0;
+        for (int i = failed.size() - 1; i >= 0; i--) {
+            PendingSession next = failed.get(i).retried();
+            if (queued.contains(next.tokenHash())) continue;
+            if (next.attempts() >= maxFlushAttempts || !pending.offerFirst(next)) {
+                dropped++;
+            } else {
+                retriedRows.incrementAndGet();
+            }
+        }
+        if (dropped > 0) {
+            failedRows.addAndGet(dropped);
+            log.warn("Gave up on {} sessions after repeated flush failures or a full queue", dropped);
+        }
+    }
+
+    private void insert(List<PendingSession> sessions) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, sessions, sessions.size(), (ps, s) -> {
+            ps.setLong(1, s.userId());
+            ps.setString(2, s.tokenHash());
+            ps.setTimestamp(3, Timestamp.valueOf(s.createdAt()));
+            ps.setTimestamp(4, Timestamp.valueOf(s.expiresAt()));
+        });
+        flushedRows.addAndGet(sessions.size());
+    }
+}
@@ -1,8 +1,8 @@
 package com.chatapp.service.ai;
 
+import com.chatapp.cache.GroupAccessCache;
 import com.chatapp.config.AIServiceConfig;
 import com.chatapp.dto.ai.*;
-import com.chatapp.repository.GroupRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
@@ -12,7 +12,7 @@ import org.springframework.web.client.RestTemplate;
 public class AIServiceGateway {
 
     @Autowired
-    private GroupRepository groupRepository;
+    private GroupAccessCache groupAccessCache;
 
     @Autowired
     private RestTemplate restTemplate;
@@ -24,7 +24,7 @@ public class AIServiceGateway {
      * Check if AI is enabled for a group
      */
     public boolean isAIEnabled(Long groupId) {
-        return groupRepository.findAiEnabledByGroupId(groupId).orElse(false);
+        return groupAccessCache.isAIEnabled(groupId);
     }
 
     /**
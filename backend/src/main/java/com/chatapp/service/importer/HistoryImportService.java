@@ -0,0 +1,417 @@
+package com.chatapp.service.importer;
+
+import com.chatapp.cache.GroupAccessCache;
+import com.chatapp.model.ImportJob;
+import com.chatapp.repository.ImportJobRepository;
+import com.chatapp.service.PartitionMaintenanceService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Imports chat archives (NDJSON or CSV) into messages, group_members and
+ * media_message using PostgreSQL COPY.
+ *
+ * The archive is streamed: records are read, validated and copied one batch at
+ * a time, and each batch is committed together with the job's progress
+ * counters. A failed import can therefore be resumed by re-sending the same
+ * archive with the job id; already consumed records are skipped.
+ */
+@Service
+public class HistoryImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryImportService.class);
+
+    public static final Set<String> TARGETS = Set.of("messages", "group_members", "media_message");
+    public static final Set<String> FORMATS = Set.of("ndjson", "csv");
+
+    private static final DateTimeFormatter COPY_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+    /** Outcome of one import run (a resumed job reports only the rows of this run) */
+    public record ImportResult(ImportJob job, long rowsThisRun, long elapsedMs, double rowsPerSecond) {}
+
+    private final ImportJobRepository importJobRepository;
+    private final GroupAccessCache groupAccessCache;
+    private final PartitionMaintenanceService partitionMaintenanceService;
+    private final ObjectMapper mapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate txTemplate;
+    private final int batchSize;
+
+    public HistoryImportService(ImportJobRepository importJobRepository,
+                                GroupAccessCache groupAccessCache,
+                                PartitionMaintenanceService partitionMaintenanceService,
+                                ObjectMapper mapper,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${chatapp.import.batch-size:5000}") int batchSize) {
+        this.importJobRepository = importJobRepository;
+        this.groupAccessCache = groupAccessCache;
+        this.partitionMaintenanceService = partitionMaintenanceService;
+        this.mapper = mapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Run (or resume) an import. When resumeJobId is given, the first
+     * rows_committed + rows_rejected records of the archive are skipped.
+     */
+    public ImportResult runImport(String target, String format, String sourceName,
+                                  Long resumeJobId, InputStream in) throws IOException {
+        if (!TARGETS.contains(target)) {
+            throw new IllegalArgumentException("Unknown import target: " + target);
+        }
+        if (!FORMATS.contains(format)) {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+
+        ImportJob job = resumeJobId != null ? loadResumableJob(resumeJobId, target, format) : newJob(target, format, sourceName);
+        job.setStatus("RUNNING");
+        job.setLastError(null);
+        job.setFinishedAt(null);
+        job = importJobRepository.save(job);
+
+        long startNanos = System.nanoTime();
+        long alreadyConsumed = job.getRowsCommitted() + job.getRowsRejected();
+        long consumedThisRun = 0;
+
+        try (ImportRecordReader reader = ImportRecordReader.open(format, in, mapper)) {
+            // Skip what a previous run already committed
+            for (long i = 0; i < alreadyConsumed; i++) {
+                if (reader.next() == null) break;
+            }
+
+            List<Map<String, String>> batch = new ArrayList<>(batchSize);
+            Map<String, String> record;
+            while ((record = reader.next()) != null) {
+                batch.add(record);
+                if (batch.size() == batchSize) {
+                    job = copyBatch(job, target, batch);
+                    consumedThisRun += batch.size();
+                    batch.clear();
+                    logProgress(job, consumedThisRun, startNanos);
+                }
+            }
+            if (!batch.isEmpty()) {
+                job = copyBatch(job, target, batch);
+                consumedThisRun += batch.size();
+            }
+
+            job.setStatus("COMPLETED");
+            job.setFinishedAt(LocalDateTime.now());
+        } catch (Exception e) {
+            job.setStatus("FAILED");
+            job.setLastError(e.getMessage());
+            log.warn("Import job {} failed after {} records: {}", job.getJobId(), consumedThisRun, e.getMessage(), e);
+        }
+
+        job.setUpdatedAt(LocalDateTime.now());
+        job = importJobRepository.save(job);
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        return new ImportResult(job, consumedThisRun, elapsedMs, consumedThisRun * 1000.0 / elapsedMs);
+    }
+
+    public Optional<ImportJob> getJob(Long jobId) {
+        return importJobRepository.findById(jobId);
+    }
+
+    // ======================
+    // BATCH: validate, resolve ids, COPY, record progress (one transaction)
+    // ======================
+    private ImportJob copyBatch(ImportJob job, String target, List<Map<String, String>> records) {
+        return txTemplate.execute(status -> {
+            StringBuilder csv = new StringBuilder(records.size() * 128);
+            List<String> rejections = new ArrayList<>();
+
+            String copySql = switch (target) {
+                case "messages" -> buildMessageRows(records, csv, rejections);
+                case "group_members" -> buildMemberRows(records, csv, rejections);
+                default -> buildMediaRows(records, csv, rejections);
+            };
+
+            int accepted = records.size() - rejections.size();
+            if (accepted > 0) {
+                jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+                    try {
+                        return con.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql, new StringReader(csv.toString()));
+                    } catch (IOException e) {
+                        throw new SQLException("COPY failed: " + e.getMessage(), e);
+                    }
+                });
+            }
+
+            ImportJob current = importJobRepository.findById(job.getJobId()).orElseThrow();
+            current.setRowsCommitted(current.getRowsCommitted() + accepted);
+            current.setRowsRejected(current.getRowsRejected() + rejections.size());
+            if (!rejections.isEmpty()) {
+                current.setLastError(rejections.size() + " rejected in last batch, e.g. " + rejections.get(0));
+            }
+            current.setUpdatedAt(LocalDateTime.now());
+            return importJobRepository.save(current);
+        });
+    }
+
+    private String buildMessageRows(List<Map<String, String>> records, StringBuilder csv, List<String> rejections) {
+        Map<String, Long> emailToId = resolveEmails(records, "sender_email");
+        Set<Long> users = existingIds("users", "user_id", collectIds(records, "sender_id"));
+        Set<Long> groups = existingIds("groups", "group_id", collectIds(records, "group_id"));
+        Set<Long> media = existingIds("media_message", "media_id", collectIds(records, "media_id"));
+        LocalDateTime oldest = null;
+        LocalDateTime newest = null;
+
+        for (Map<String, String> r : records) {
+            try {
+                Long senderId = r.get("sender_id") != null ? parseId(r.get("sender_id")) : emailToId.get(lower(r.get("sender_email")));
+                Long groupId = parseId(r.get("group_id"));
+                Long mediaId = r.get("media_id") != null ? parseId(r.get("media_id")) : null;
+                String content = r.get("content");
+
+                if (senderId == null || (r.get("sender_id") != null && !users.contains(senderId))) {
+                    throw new IllegalArgumentException("unknown sender");
+                }
+                if (groupId == null || !groups.contains(groupId)) {
+                    throw new IllegalArgumentException("unknown group " + r.get("group_id"));
+                }
+                if (mediaId != null && !media.contains(mediaId)) {
+                    throw new IllegalArgumentException("unknown media " + mediaId);
+                }
+                if (content == null && mediaId == null) {
+                    throw new IllegalArgumentException("message has neither content nor media");
+                }
+
+                LocalDateTime createdAt = parseTimestamp(r.get("created_at"));
+                appendRow(csv, senderId, groupId, content, createdAt, mediaId);
+
+                if (oldest == null || createdAt.isBefore(oldest)) oldest = createdAt;
+                if (newest == null || createdAt.isAfter(newest)) newest = createdAt;
+            } catch (RuntimeException e) {
+                rejections.add(e.getMessage());
+            }
+        }
+
+        // Archived messages may predate the oldest monthly partition
+        if (oldest != null) {
+            partitionMaintenanceService.ensurePartitions("messages", oldest.toLocalDate(), newest.toLocalDate());
+        }
+        return "COPY messages (sender_id, group_id, content, created_at, media_id) FROM STDIN WITH (FORMAT csv)";
+    }
+
+    private String buildMemberRows(List<Map<String, String>> records, StringBuilder csv, List<String> rejections) {
+        Map<String, Long> emailToId = resolveEmails(records, "user_email");
+        Set<Long> users = existingIds("users", "user_id", collectIds(records, "user_id"));
+        Set<Long> groups = existingIds("groups", "group_id", collectIds(records, "group_id"));
+        Set<String> existingPairs = existingMemberships(groups);
+        Set<Long> touchedGroups = new HashSet<>();
+
+        for (Map<String, String> r : records) {
+            try {
+                Long userId = r.get("user_id") != null ? parseId(r.get("user_id")) : emailToId.get(lower(r.get("user_email")));
+                Long groupId = parseId(r.get("group_id"));
+
+                if (userId == null || (r.get("user_id") != null && !users.contains(userId))) {
+                    throw new IllegalArgumentException("unknown user");
+                }
+                if (groupId == null || !groups.contains(groupId)) {
+                    throw new IllegalArgumentException("unknown group " + r.get("group_id"));
+                }
+                // Skip memberships that already exist (or repeat within the batch); COPY has no ON CONFLICT
+                if (!existingPairs.add(groupId + ":" + userId)) {
+                    throw new IllegalArgumentException("duplicate membership " + groupId + ":" + userId);
+                }
+
+                appendRow(csv, groupId, userId, parseTimestamp(r.get("joined_at")));
+                touchedGroups.add(groupId);
+            } catch (RuntimeException e) {
+                rejections.add(e.getMessage());
+            }
+        }
+
+        touchedGroups.forEach(groupAccessCache::invalidateMembers);
+        return "COPY group_members (group_id, user_id, joined_at) FROM STDIN WITH (FORMAT csv)";
+    }
+
+    private String buildMediaRows(List<Map<String, String>> records, StringBuilder csv, List<String> rejections) {
+        Set<Long> groups = existingIds("groups", "group_id", collectIds(records, "group_id"));
+
+        for (Map<String, String> r : records) {
+            try {
+                Long groupId = parseId(r.get("group_id"));
+                if (groupId == null || !groups.contains(groupId)) {
+                    throw new IllegalArgumentException("unknown group " + r.get("group_id"));
+                }
+                String fileName = required(r, "file_name");
+                String fileType = required(r, "file_type");
+                Long fileSize = parseId(required(r, "file_size"));
+                String filePath = required(r, "file_path");
+                String iv = required(r, "iv");
+
+                appendRow(csv, fileName, fileType, fileSize, filePath, parseTimestamp(r.get("uploaded_at")), groupId, iv);
+            } catch (RuntimeException e) {
+                rejections.add(e.getMessage());
+            }
+        }
+        return "COPY media_message (file_name, file_type, file_size, file_path, uploaded_at, group_id, iv) FROM STDIN WITH (FORMAT csv)";
+    }
+
+    // -----------------------------
+    // Id resolution (one query per batch, not per row)
+    // -----------------------------
+    private Map<String, Long> resolveEmails(List<Map<String, String>> records, String column) {
+        String[] emails = records.stream()
+                .map(r -> lower(r.get(column)))
+                .filter(Objects::nonNull)
+                .distinct()
+                .toArray(String[]::new);
+        Map<String, Long> result = new HashMap<>();
+        if (emails.length == 0) return result;
+
+        jdbcTemplate.query("SELECT lower(email) AS email, user_id FROM users WHERE lower(email) = ANY(?)",
+                rs -> { result.put(rs.getString("email"), rs.getLong("user_id")); },
+                (Object) emails);
+        return result;
+    }
+
+    private Set<Long> existingIds(String table, String idColumn, Long[] ids) {
+        Set<Long> result = new HashSet<>();
+        if (ids.length == 0) return result;
+
+        jdbcTemplate.query("SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn + " = ANY(?)",
+                rs -> { result.add(rs.getLong(1)); },
+                (Object) ids);
+        return result;
+    }
+
+    private Set<String> existingMemberships(Set<Long> groupIds) {
+        Set<String> result = new HashSet<>();
+        if (groupIds.isEmpty()) return result;
+
+        jdbcTemplate.query("SELECT group_id, user_id FROM group_members WHERE group_id = ANY(?)",
+                rs -> { result.add(rs.getLong(1) + ":" + rs.getLong(2)); },
+                (Object) groupIds.toArray(new Long[0]));
+        return result;
+    }
+
+    private static Long[] collectIds(List<Map<String, String>> records, String column) {
+        return records.stream()
+                .map(r -> {
+                    try {
+                        return parseId(r.get(column));
+                    } catch (RuntimeException e) {
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .distinct()
+                .toArray(Long[]::new);
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+    private ImportJob newJob(String target, String format, String sourceName) {
+        ImportJob job = new ImportJob();
+        job.setTarget(target);
+        job.setFormat(format);
+        job.setSourceName(sourceName);
+        return job;
+    }
+
+    private ImportJob loadResumableJob(Long jobId, String target, String format) {
+        ImportJob job = importJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Import job not found: " + jobId));
+        if (!job.getTarget().equals(target) || !job.getFormat().equals(format)) {
+            throw new IllegalArgumentException("Import job " + jobId + " was started for " + job.getTarget() + "/" + job.getFormat());
+        }
+        if ("COMPLETED".equals(job.getStatus())) {
+            throw new IllegalArgumentException("Import job " + jobId + " already completed");
+        }
+        return job;
+    }
+
+    private void logProgress(ImportJob job, long consumed, long startNanos) {
+        long elapsedMs = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        log.info("Import job {}: {} records this run ({} rows/sec), {} committed total",
+                job.getJobId(), consumed, consumed * 1000 / elapsedMs, job.getRowsCommitted());
+    }
+
+    /** Append one CSV row in COPY's csv format: null = empty unquoted, text always quoted */
+    private static void appendRow(StringBuilder csv, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) csv.append(',');
+            Object v = values[i];
+            if (v == null) continue;
+            if (v instanceof String s) {
+                csv.append('"').append(s.replace("\"", "\"\"")).append('"');
+            } else if (v instanceof LocalDateTime ts) {
+                csv.append(ts.format(COPY_TIMESTAMP));
+            } else {
+                csv.append(v);
+            }
+        }
+        csv.append('\n');
+    }
+
+    private static Long parseId(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            // NDJSON numbers may arrive as "12.0" after toString()
+            return new java.math.BigDecimal(value.trim()).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("invalid id " + value);
+        }
+    }
+
+    private static LocalDateTime parseTimestamp(String value) {
+        if (value == null || value.isBlank()) {
+            return LocalDateTime.now(ZoneOffset.UTC);
+        }
+        try {
+            return OffsetDateTime.parse(value).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(value);
+            } catch (DateTimeParseException e2) {
+                try {
+                    return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(value)), ZoneOffset.UTC);
+                } catch (NumberFormatException e3) {
+                    throw new IllegalArgumentException("invalid timestamp " + value);
+                }
+            }
+        }
+    }
+
+    private static String required(Map<String, String> record, String column) {
+        String value = record.get(column);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("missing " + column);
+        }
+        return value;
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
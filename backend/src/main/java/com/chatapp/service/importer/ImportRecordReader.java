@@ -0,0 +1,151 @@
+package com.chatapp.service.importer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an archive one record at a time. Each record is a flat map of column
+ * name to string value (null for missing/empty values).
+ */
+public abstract class ImportRecordReader implements Closeable {
+
+    protected final BufferedReader reader;
+
+    protected ImportRecordReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /** Next record, or null at end of input */
+    public abstract Map<String, String> next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    public static ImportRecordReader open(String format, InputStream in, ObjectMapper mapper) throws IOException {
+        switch (format) {
+            case "ndjson":
+                return new NdjsonReader(in, mapper);
+            case "csv":
+                return new CsvReader(in);
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    // ======================
+    // NDJSON: one JSON object per line
+    // ======================
+    static class NdjsonReader extends ImportRecordReader {
+        private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+        private final ObjectMapper mapper;
+
+        NdjsonReader(InputStream in, ObjectMapper mapper) {
+            super(in);
+            this.mapper = mapper;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+
+                Map<String, Object> raw = mapper.readValue(line, MAP_TYPE);
+                Map<String, String> record = new HashMap<>();
+                raw.forEach((k, v) -> record.put(k, v == null ? null : v.toString()));
+                return record;
+            }
+            return null;
+        }
+    }
+
+    // ======================
+    // CSV (RFC 4180): header row, quoted fields may contain commas/newlines
+    // ======================
+    static class CsvReader extends ImportRecordReader {
+        private final List<String> header;
+
+        CsvReader(InputStream in) throws IOException {
+            super(in);
+            List<String> columns = readRow();
+            if (columns == null) {
+                throw new IllegalArgumentException("CSV archive has no header row");
+            }
+            this.header = columns.stream().map(String::trim).toList();
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            List<String> row;
+            do {
+                row = readRow();
+                if (row == null) return null;
+            } while (row.size() == 1 && row.get(0) == null); // blank line
+
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                record.put(header.get(i), i < row.size() ? row.get(i) : null);
+            }
+            return record;
+        }
+
+        private List<String> readRow() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean inQuotes = false;
+            boolean quoted = false;
+
+            int c = reader.read();
+            if (c == -1) return null;
+
+            while (true) {
+                if (inQuotes) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted CSV field");
+                    } else if (c == '"') {
+                        reader.mark(1);
+                        int peek = reader.read();
+                        if (peek == '"') {
+                            field.append('"');
+                        } else {
+                            inQuotes = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    inQuotes = true;
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(toValue(field, quoted));
+                    field.setLength(0);
+                    quoted = false;
+                } else if (c == '\n' || c == -1) {
+                    fields.add(toValue(field, quoted));
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+
+        private static String toValue(StringBuilder field, boolean quoted) {
+            return (field.length() == 0 && !quoted) ? null : field.toString();
+        }
+    }
+}
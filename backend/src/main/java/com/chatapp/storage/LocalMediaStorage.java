@@ -0,0 +1,153 @@
+package com.chatapp.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Media on this node's disk, under chatapp.upload-dir. Rows written before
+ * storage keys existed hold absolute paths; those resolve to themselves.
+ */
+@Component
+@ConditionalOnProperty(name = "chatapp.media.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalMediaStorage implements MediaStorage {
+
+    private final Path root;
+
+    public LocalMediaStorage(@Value("${chatapp.upload-dir}") String uploadDir) {
+        this.root = Paths.get(uploadDir).toAbsolutePath();
+    }
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    /** The file for a key (relative to the upload dir, or a legacy absolute path) */
+    public Path resolve(String key) {
+        return root.resolve(key);
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void put(String key, InputStream in, long length) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        // Never expose a half-written file under its final name
+        Path part = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".part");
+        try {
+            long copied = Files.copy(in, part);
+            if (copied != length) {
+                throw new IOException("Expected " + length + " bytes for " + key + ", got " + copied);
+            }
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long count) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        channel.position(start);
+        return new BoundedInputStream(Channels.newInputStream(channel), count);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.of(resolve(key));
+    }
+
+    @Override
+    public boolean supportsPresignedGet() {
+        return false;
+    }
+
+    @Override
+    public Optional<URI> presignedGet(String key, Duration ttl, String downloadName, String contentType) {
+        return Optional.empty();
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+
+    /** Ends after {@code remaining} bytes */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.chatapp.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Where uploaded media bytes live. Keys are relative, '/'-separated names
+ * such as {@code 12/ab/cd/1700000000000_photo.jpg} and are what
+ * media_message.file_path stores.
+ *
+ * Selected by chatapp.media.storage.type: {@code local} (default, a directory
+ * on this node) or {@code s3} (any S3-compatible bucket, so several backend
+ * instances can serve the same media).
+ */
+public interface MediaStorage {
+
+    /** Backend name, for logs and stats */
+    String name();
+
+    /** Store a fully written local file under {@code key}. The file is consumed (moved or uploaded, then removed). */
+    void put(String key, Path file) throws IOException;
+
+    /** Store exactly {@code length} bytes read from {@code in} under {@code key} */
+    void put(String key, InputStream in, long length) throws IOException;
+
+    /** The whole object; NoSuchFileException if it does not exist */
+    InputStream get(String key) throws IOException;
+
+    /** {@code count} bytes starting at {@code start}; NoSuchFileException if it does not exist */
+    InputStream getRange(String key, long start, long count) throws IOException;
+
+    /** Size in bytes; NoSuchFileException if it does not exist */
+    long size(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    /** Remove the object if present */
+    void delete(String key) throws IOException;
+
+    /** The local file behind {@code key}, when there is one (lets downloads use sendfile) */
+    Optional<Path> localPath(String key);
+
+    /** Whether presignedGet can return URLs */
+    boolean supportsPresignedGet();
+
+    /**
+     * A time-limited URL clients can GET directly, bypassing this server.
+     * Empty when the backend cannot issue one.
+     */
+    Optional<URI> presignedGet(String key, Duration ttl, String downloadName, String contentType);
+}
@@ -0,0 +1,221 @@
+package com.chatapp.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Media in an S3-compatible bucket (AWS S3, MinIO, ...), shared by every
+ * backend instance. Range reads map to ranged GETs, and clients can be handed
+ * presigned URLs to fetch the (encrypted) bytes from the bucket directly.
+ *
+ * Presigned URLs are signed for chatapp.media.s3.public-endpoint, the address
+ * browsers reach the bucket on, which may differ from the one this server uses.
+ *
+ * With chatapp.media.s3.local-fallback, keys missing from the bucket are read
+ * from chatapp.upload-dir instead, so media uploaded while this node used local
+ * storage stays reachable after switching to s3. Such objects get no presigned
+ * URL (clients then download through the server), and deletes remove both copies.
+ */
+@Component
+@ConditionalOnProperty(name = "chatapp.media.storage.type", havingValue = "s3")
+public class S3MediaStorage implements MediaStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(S3MediaStorage.class);
+
+    private final S3Client s3;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final LocalMediaStorage fallback; // null when local-fallback is off
+
+    public S3MediaStorage(@Value("${chatapp.media.s3.bucket}") String bucket,
+                          @Value("${chatapp.media.s3.region:us-east-1}") String region,
+                          @Value("${chatapp.media.s3.endpoint:}") String endpoint,
+                          @Value("${chatapp.media.s3.public-endpoint:}") String publicEndpoint,
+                          @Value("${chatapp.media.s3.path-style:false}") boolean pathStyle,
+                          @Value("${chatapp.media.s3.access-key:}") String accessKey,
+                          @Value("${chatapp.media.s3.secret-key:}") String secretKey,
+                          @Value("${chatapp.media.s3.local-fallback:true}") boolean localFallback,
+                          @Value("${chatapp.upload-dir}") String uploadDir) {
+        this.bucket = bucket;
+        this.fallback = localFallback ? new LocalMediaStorage(uploadDir) : null;
+
+        // Explicit keys for MinIO and similar; otherwise the usual AWS chain (env, profile, instance role)
+        AwsCredentialsProvider credentials = accessKey.isBlank()
+                ? DefaultCredentialsProvider.builder().build()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        S3Configuration serviceConfig = S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build();
+
+        var clientBuilder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(serviceConfig);
+        if (!endpoint.isBlank()) clientBuilder.endpointOverride(URI.create(endpoint));
+        this.s3 = clientBuilder.build();
+
+        String presignEndpoint = publicEndpoint.isBlank() ? endpoint : publicEndpoint;
+        var presignerBuilder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(serviceConfig);
+        if (!presignEndpoint.isBlank()) presignerBuilder.endpointOverride(URI.create(presignEndpoint));
+        this.presigner = presignerBuilder.build();
+
+        log.info("Media storage: s3 bucket {}{}{}", bucket, endpoint.isBlank() ? "" : " at " + endpoint,
+                fallback == null ? "" : ", falling back to " + uploadDir + " for keys not in the bucket");
+    }
+
+    @Override
+    public String name() {
+        return "s3";
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        try {
+            s3.putObject(b -> b.bucket(bucket).key(key), RequestBody.fromFile(file));
+        } catch (SdkException e) {
+            throw failure("put", key, e);
+        }
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void put(String key, InputStream in, long length) throws IOException {
+        try {
+            s3.putObject(b -> b.bucket(bucket).key(key), RequestBody.fromInputStream(in, length));
+        } catch (SdkException e) {
+            throw failure("put", key, e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (SdkException e) {
+            IOException failure = failure("get", key, e);
+            if (failure instanceof NoSuchFileException && fallback != null) return fallback.get(key);
+            throw failure;
+        }
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long count) throws IOException {
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(key)
+                    .range("bytes=" + start + "-" + (start + count - 1)).build());
+        } catch (SdkException e) {
+            IOException failure = failure("get", key, e);
+            if (failure instanceof NoSuchFileException && fallback != null) return fallback.getRange(key, start, count);
+            throw failure;
+        }
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        try {
+            return s3.headObject(b -> b.bucket(bucket).key(key)).contentLength();
+        } catch (SdkException e) {
+            IOException failure = failure("head", key, e);
+            if (failure instanceof NoSuchFileException && fallback != null) return fallback.size(key);
+            throw failure;
+        }
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        try {
+            size(key);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(b -> b.bucket(bucket).key(key));
+        } catch (SdkException e) {
+            throw failure("delete", key, e);
+        }
+        if (fallback != null) fallback.delete(key);
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean supportsPresignedGet() {
+        return true;
+    }
+
+    @Override
+    public Optional<URI> presignedGet(String key, Duration ttl, String downloadName, String contentType) {
+        if (fallback != null && !inBucket(key)) {
+            return Optional.empty();
+        }
+        String disposition = "attachment; filename=\"" + downloadName.replace("\"", "") + "\"";
+        var presigned = presigner.presignGetObject(p -> p
+                .signatureDuration(ttl)
+                .getObjectRequest(b -> b.bucket(bucket).key(key)
+                        .responseContentType(contentType)
+                        .responseContentDisposition(disposition)));
+        return Optional.of(URI.create(presigned.url().toString()));
+    }
+
+    @PreDestroy
+    public void close() {
+        presigner.close();
+        s3.close();
+    }
+
+    // -----------------------------
+    // Helpers
+    // -----------------------------
+
+    private boolean inBucket(String key) {
+        try {
+            s3.headObject(b -> b.bucket(bucket).key(key));
+            return true;
+        } catch (SdkException e) {
+            return false;
+        }
+    }
+
+    /** Surface SDK errors as IOExceptions, missing objects as NoSuchFileException like the local backend */
+    private static IOException failure(String operation, String key, SdkException e) {
+        if (e instanceof NoSuchKeyException || (e instanceof S3Exception s3e && s3e.statusCode() == 404)) {
+            return new NoSuchFileException(key);
+        }
+        return new IOException("S3 " + operation + " of " + key + " failed: " + e.getMessage(), e);
+    }
+}
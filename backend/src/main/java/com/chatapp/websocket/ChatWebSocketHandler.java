@@ -1,16 +1,30 @@
 package com.chatapp.websocket;
 
+import com.chatapp.cache.GroupAccessCache;
+import com.chatapp.exception.PayloadTooLargeException;
+import com.chatapp.exception.RateLimitedException;
+import com.chatapp.model.MediaMessage;
+import com.chatapp.model.Message;
 import com.chatapp.model.MessageDelivery;
 import com.chatapp.model.User;
 import com.chatapp.repository.UserRepository;
+import com.chatapp.security.UploadThrottle;
 import com.chatapp.service.ChatService;
+import com.chatapp.service.ChatService.SavedMessage;
 import com.chatapp.service.JwtService;
+import com.chatapp.service.MediaService;
+import com.chatapp.service.MessageClientIds;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -20,6 +34,12 @@ import java.util.concurrent.Executors;
 @Component
 public class ChatWebSocketHandler implements WebSocketHandler {
 
+    /** Session attribute holding the authenticated user's id */
+    public static final String USER_ID_ATTRIBUTE = "userId";
+
+    // Upper bound on the JSON header of an inline media frame
+    public static final int INLINE_HEADER_MAX_BYTES = 16 * 1024;
+
     @Autowired
     private JwtService jwtService;
 
@@ -32,6 +52,29 @@ public class ChatWebSocketHandler implements WebSocketHandler {
     @Autowired
     private ObjectMapper mapper;
 
+    @Autowired
+    private MediaService mediaService;
+
+    @Autowired
+    private GroupAccessCache groupAccessCache;
+
+    @Autowired
+    private UploadThrottle uploadThrottle;
+
+    @Autowired
+    private MessageClientIds messageClientIds;
+
+    // Largest attachment accepted as a binary frame; bigger files go through /media uploads
+    @Value("${chatapp.ws.inline-media.max-bytes:262144}")
+    private int inlineMediaMaxBytes;
+
+    // Outgoing frames queued per session while another send is in progress, and how long a send may take
+    @Value("${chatapp.ws.send-buffer-bytes:2097152}")
+    private int sendBufferBytes;
+
+    @Value("${chatapp.ws.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
     // Map<userId, WebSocketSession>
     private final Map<Long, WebSocketSession> onlineUsers = new ConcurrentHashMap<>();
 
@@ -57,10 +100,13 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         user.setOnlineStatus(true);
         userRepository.save(user);
 
-        onlineUsers.put(userId, session);
+        session.getAttributes().put(USER_ID_ATTRIBUTE, userId);
+        // Fan-out, status broadcasts and this thread may all send to the session at once
+        WebSocketSession out = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, sendBufferBytes);
+        onlineUsers.put(userId, out);
 
         // Send current online users list to the newly connected user
-        sendCurrentOnlineUsers(session, userId);
+        sendCurrentOnlineUsers(out, userId);
 
         // Notify others that this user is now online
         broadcastStatus(userId, true);
@@ -69,7 +115,7 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         List<MessageDelivery> undelivered = chatService.getUndeliveredMessages(userId);
         for (MessageDelivery delivery : undelivered) {
             Map<String, Object> payload = chatService.buildMessagePayload(delivery.getMessage(), true);
-            session.sendMessage(new TextMessage(mapper.writeValueAsString(payload)));
+            out.sendMessage(new TextMessage(mapper.writeValueAsString(payload)));
             chatService.markAsDelivered(delivery);
         }
     }
@@ -108,6 +154,11 @@ public class ChatWebSocketHandler implements WebSocketHandler {
 
     @Override
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        if (message instanceof BinaryMessage binary) {
+            handleInlineMedia(session, binary.getPayload());
+            return;
+        }
+
         Map<String, Object> payload = mapper.readValue(
                 message.getPayload().toString(),
                 new TypeReference<Map<String, Object>>() {}
@@ -151,6 +202,148 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         broadcastToAll(broadcastPayload, userId);
     }
 
+    /**
+     * A small attachment sent as a binary frame (see InlineMediaFrame): stored
+     * through MediaService, saved as a message, and forwarded with its bytes to
+     * online recipients so they need no download. The sender gets the saved
+     * message (with its client_id) back as the acknowledgement, or a
+     * message_error frame. A client_id the sender already used gets the
+     * acknowledgement of the stored message again, without storing the
+     * attachment twice.
+     */
+    private void handleInlineMedia(WebSocketSession session, ByteBuffer frame) throws Exception {
+        Long senderId = (Long) session.getAttributes().get(USER_ID_ATTRIBUTE);
+        WebSocketSession replyTo = onlineUsers.getOrDefault(senderId, session);
+
+        InlineMediaFrame.Decoded decoded = InlineMediaFrame.decode(frame, INLINE_HEADER_MAX_BYTES);
+        if (senderId == null || decoded == null) {
+            sendError(replyTo, null, "Malformed media frame", null);
+            return;
+        }
+        Map<String, Object> header;
+        try {
+            header = mapper.readValue(decoded.header(), new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            sendError(replyTo, null, "Malformed media frame", null);
+            return;
+        }
+        String clientId = header.get("client_id") != null ? header.get("client_id").toString() : null;
+        String dedupId = MessageClientIds.clientIdOf(clientId);
+        byte[] ciphertext = decoded.body();
+
+        if (header.get("group_id") == null || header.get("iv") == null || ciphertext.length == 0) {
+            sendError(replyTo, clientId, "group_id, iv and file bytes are required", null);
+            return;
+        }
+        // The header is client JSON: check types here rather than let a cast fail mid-send
+        Long groupId = longField(header, "group_id");
+        String iv = stringField(header, "iv");
+        String fileName = stringField(header, "file_name");
+        String fileType = stringField(header, "file_type");
+        String content = stringField(header, "content");
+        if (groupId == null || iv == null
+                || (fileName == null && header.get("file_name") != null)
+                || (fileType == null && header.get("file_type") != null)
+                || (content == null && header.get("content") != null)) {
+            sendError(replyTo, clientId, "group_id must be an integer; iv, file_name, file_type and content must be strings", null);
+            return;
+        }
+        if (ciphertext.length > inlineMediaMaxBytes) {
+            sendError(replyTo, clientId, "Attachments over " + inlineMediaMaxBytes + " bytes must be uploaded", null);
+            return;
+        }
+        if (!groupAccessCache.isMember(groupId, senderId)) {
+            sendError(replyTo, clientId, "Not a member of this group", null);
+            return;
+        }
+        if (dedupId != null) {
+            Optional<Message> existing = messageClientIds.find(senderId, dedupId);
+            if (existing.isPresent()) {
+                sendInlineAck(replyTo, existing.get(), clientId);
+                return;
+            }
+        }
+
+        MediaMessage media;
+        try (UploadThrottle.Permit permit = uploadThrottle.admit(senderId, ciphertext.length)) {
+            media = mediaService.saveStream(new ByteArrayInputStream(ciphertext), groupId, fileName, fileType, iv);
+        } catch (RateLimitedException e) {
+            sendError(replyTo, clientId, e.getMessage(), e.getRetryAfterSeconds());
+            return;
+        } catch (PayloadTooLargeException e) {
+            sendError(replyTo, clientId, e.getMessage(), null);
+            return;
+        }
+
+        SavedMessage saved = chatService.saveInlineMediaMessage(senderId, groupId, content, media, dedupId, onlineUsers);
+        if (saved == null) {
+            // Lost the race to an earlier attempt; its upload is the one referenced, this one is collected as an orphan
+            Optional<Message> existing = messageClientIds.find(senderId, dedupId);
+            if (existing.isPresent()) {
+                sendInlineAck(replyTo, existing.get(), clientId);
+            } else {
+                sendError(replyTo, clientId, "Message already being sent", 1L);
+            }
+            return;
+        }
+
+        Map<String, Object> dto = chatService.buildMessagePayload(saved.message(), true);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> mediaInfo = (Map<String, Object>) dto.get("media");
+        mediaInfo.put("iv", media.getIv());
+
+        if (!saved.onlineRecipients().isEmpty()) {
+            byte[] outgoing = InlineMediaFrame.encode(mapper.writeValueAsBytes(dto), ciphertext);
+            for (WebSocketSession ws : saved.onlineRecipients()) {
+                // One message per send: sending consumes the buffer's position
+                ws.sendMessage(new BinaryMessage(ByteBuffer.wrap(outgoing)));
+            }
+        }
+
+        Map<String, Object> ack = new HashMap<>(dto);
+        ack.put("client_id", clientId);
+        replyTo.sendMessage(new TextMessage(mapper.writeValueAsString(ack)));
+    }
+
+    private void sendInlineAck(WebSocketSession session, Message message, String clientId) throws Exception {
+        Map<String, Object> ack = chatService.buildMessagePayload(message, true);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> mediaInfo = (Map<String, Object>) ack.get("media");
+        if (mediaInfo != null) mediaInfo.put("iv", message.getMediaMessage().getIv());
+        ack.put("client_id", clientId);
+        session.sendMessage(new TextMessage(mapper.writeValueAsString(ack)));
+    }
+
+    private static String stringField(Map<String, Object> header, String name) {
+        return header.get(name) instanceof String value ? value : null;
+    }
+
+    /** Integral JSON numbers or numeric strings; null for anything else */
+    private static Long longField(Map<String, Object> header, String name) {
+        Object value = header.get(name);
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Long.valueOf(text.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void sendError(WebSocketSession session, String clientId, String error, Long retryAfterSeconds)
+            throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", "message_error");
+        payload.put("client_id", clientId);
+        payload.put("error", error);
+        if (retryAfterSeconds != null) payload.put("retry_after", retryAfterSeconds);
+        session.sendMessage(new TextMessage(mapper.writeValueAsString(payload)));
+    }
+
     private void handleUserJoined(Map<String, Object> payload) {
         System.out.println("User joined group: " + payload);
     }
@@ -166,15 +359,18 @@ public class ChatWebSocketHandler implements WebSocketHandler {
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
-        Long userId = onlineUsers.entrySet().stream()
-                .filter(e -> e.getValue().equals(session))
-                .map(Map.Entry::getKey)
-                .findFirst()
-                .orElse(null);
-
+        // Only the user's current session takes them offline; a replaced one just goes away
+        Long userId = (Long) session.getAttributes().get(USER_ID_ATTRIBUTE);
+        boolean[] removed = { false };
         if (userId != null) {
-            onlineUsers.remove(userId);
+            onlineUsers.computeIfPresent(userId, (k, ws) -> {
+                if (!ws.getId().equals(session.getId())) return ws;
+                removed[0] = true;
+                return null;
+            });
+        }
 
+        if (removed[0]) {
             User user = userRepository.findById(userId).orElse(null);
             if (user != null) {
                 user.setOnlineStatus(false);
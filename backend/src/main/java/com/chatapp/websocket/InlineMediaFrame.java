@@ -0,0 +1,42 @@
+package com.chatapp.websocket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary WebSocket frame carrying a small encrypted attachment together with
+ * its message, in both directions:
+ *
+ *   [4-byte big-endian header length N][N bytes UTF-8 JSON header][ciphertext]
+ *
+ * Client to server the header is {type, group_id, client_id, file_name,
+ * file_type, iv, content?}; server to recipients it is the usual message
+ * payload, with the media's iv included.
+ */
+final class InlineMediaFrame {
+
+    private InlineMediaFrame() {}
+
+    record Decoded(byte[] header, byte[] body) {}
+
+    /** Split a frame; null when it is malformed or the header exceeds {@code maxHeaderBytes} */
+    static Decoded decode(ByteBuffer frame, int maxHeaderBytes) {
+        ByteBuffer in = frame.duplicate();
+        if (in.remaining() < 4) return null;
+        int headerLength = in.getInt();
+        if (headerLength <= 0 || headerLength > maxHeaderBytes || headerLength > in.remaining()) return null;
+
+        byte[] header = new byte[headerLength];
+        in.get(header);
+        byte[] body = new byte[in.remaining()];
+        in.get(body);
+        return new Decoded(header, body);
+    }
+
+    static byte[] encode(byte[] header, byte[] body) {
+        return ByteBuffer.allocate(4 + header.length + body.length)
+                .putInt(header.length)
+                .put(header)
+                .put(body)
+                .array();
+    }
+}
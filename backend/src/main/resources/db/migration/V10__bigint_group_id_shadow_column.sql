@@ -0,0 +1,37 @@
+-- Online widening of groups.group_id (SERIAL/int4) to a BIGINT identity column.
+-- This migration only does the instant parts; the batched backfill, verification
+-- and the short swap transaction are run by BigintKeyMigrationService.
+-- (messages.message_id was already rebuilt as BIGINT by V9.)
+
+-- Let the id sequence run past 2^31 once the column is wide enough
+ALTER SEQUENCE groups_group_id_seq AS BIGINT;
+
+-- Shadow column kept in sync for new/updated rows; old rows are backfilled in batches
+ALTER TABLE groups ADD COLUMN group_id_big BIGINT;
+
+CREATE OR REPLACE FUNCTION groups_sync_group_id_big() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.group_id_big := NEW.group_id;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER groups_sync_group_id_big
+BEFORE INSERT OR UPDATE ON groups
+FOR EACH ROW EXECUTE FUNCTION groups_sync_group_id_big();
+
+-- Progress / verification record for each widened key
+CREATE TABLE key_migrations (
+    table_name VARCHAR(64) NOT NULL,
+    column_name VARCHAR(64) NOT NULL,
+    status VARCHAR(16) NOT NULL,          -- PENDING | BACKFILLED | VERIFIED | SWAPPED | VALIDATED | FAILED
+    rows_backfilled BIGINT NOT NULL DEFAULT 0,
+    verified_at TIMESTAMP,
+    swapped_at TIMESTAMP,
+    pending_constraints TEXT,             -- FKs re-added NOT VALID by the swap, validated afterwards
+    last_error TEXT,
+    updated_at TIMESTAMP DEFAULT NOW(),
+    PRIMARY KEY (table_name, column_name)
+);
+
+INSERT INTO key_migrations (table_name, column_name, status) VALUES ('groups', 'group_id', 'PENDING');
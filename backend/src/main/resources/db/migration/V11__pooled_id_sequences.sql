@@ -0,0 +1,20 @@
+-- Hibernate now allocates ids from these sequences with the pooled optimizer
+-- (allocationSize = 50): one nextval reserves a block of 50 ids, so inserts no
+-- longer need the generated key back and JDBC batching works.
+-- Plain SQL inserts that use the column default still get a unique id: the
+-- value returned by nextval is the top of a block Hibernate never hands out.
+ALTER SEQUENCE messages_message_id_seq INCREMENT BY 50;
+ALTER SEQUENCE media_message_media_id_seq INCREMENT BY 50;
+ALTER SEQUENCE group_keys_id_seq INCREMENT BY 50;
+
+-- groups.group_id is either still SERIAL or already an identity column,
+-- depending on whether the online BIGINT swap has run
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'groups' AND column_name = 'group_id' AND is_identity = 'YES') THEN
+        ALTER TABLE groups ALTER COLUMN group_id SET INCREMENT BY 50;
+    ELSE
+        ALTER SEQUENCE groups_group_id_seq INCREMENT BY 50;
+    END IF;
+END $$;
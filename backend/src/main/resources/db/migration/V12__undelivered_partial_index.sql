@@ -0,0 +1,6 @@
+-- Offline delivery only ever looks at a user's undelivered rows. A partial
+-- index keeps that lookup proportional to the backlog, not to the history.
+-- Created on the partitioned parent, so every monthly partition gets one.
+CREATE INDEX IF NOT EXISTS idx_message_delivery_undelivered
+    ON message_delivery (user_id)
+    WHERE NOT delivered;
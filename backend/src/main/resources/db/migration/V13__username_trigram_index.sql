@@ -0,0 +1,7 @@
+-- Substring user search (username ILIKE '%q%') can use a trigram GIN index
+-- instead of scanning every user on each keystroke.
+-- pg_trgm is a trusted extension, so the database owner may create it.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_users_username_trgm
+    ON users USING gin (username gin_trgm_ops);
@@ -0,0 +1,11 @@
+-- Tokens revoked by logout before their natural expiry. Loaded into memory at
+-- startup (and synced periodically) so requests never query this table.
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    token_hash  VARCHAR(64) PRIMARY KEY,          -- SHA-256 of the JWT, base64url
+    user_id     BIGINT,
+    expires_at  TIMESTAMP NOT NULL,               -- the token's own exp; row is useless after it
+    revoked_at  TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_expires_at ON revoked_tokens (expires_at);
+CREATE INDEX IF NOT EXISTS idx_revoked_tokens_revoked_at ON revoked_tokens (revoked_at);
@@ -0,0 +1,17 @@
+-- Sessions are looked up by the SHA-256 of the token (base64url, as produced by
+-- JwtService.tokenHash) instead of by the token itself: a 44-char key instead
+-- of a 500-char unique index, and raw tokens are no longer stored.
+ALTER TABLE sessions ADD COLUMN IF NOT EXISTS token_hash VARCHAR(64);
+
+UPDATE sessions
+SET token_hash = translate(rtrim(encode(sha256(convert_to(token, 'UTF8')), 'base64'), '='), '+/', '-_')
+WHERE token_hash IS NULL;
+
+-- Expired sessions are dead weight; no need to carry them over
+DELETE FROM sessions WHERE expires_at < NOW();
+
+ALTER TABLE sessions ALTER COLUMN token_hash SET NOT NULL;
+ALTER TABLE sessions DROP COLUMN token;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_sessions_token_hash ON sessions (token_hash);
+CREATE INDEX IF NOT EXISTS idx_sessions_expires_at ON sessions (expires_at);
@@ -0,0 +1,3 @@
+-- SHA-256 of the stored (encrypted) bytes, hex, computed while the upload is
+-- written. NULL for files uploaded before this column existed.
+ALTER TABLE media_message ADD COLUMN IF NOT EXISTS checksum VARCHAR(64);
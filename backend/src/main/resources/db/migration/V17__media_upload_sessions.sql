@@ -0,0 +1,22 @@
+-- Resumable chunked uploads. The file is preallocated on disk as <name>.part
+-- and chunks are written at index * chunk_size in any order; "received" is a
+-- bitmap with one bit per chunk, so progress survives a backend restart.
+CREATE TABLE IF NOT EXISTS media_upload_sessions (
+    upload_id       UUID PRIMARY KEY,
+    user_id         BIGINT       NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    group_id        BIGINT       NOT NULL REFERENCES groups(group_id) ON DELETE CASCADE,
+    file_name       VARCHAR(255) NOT NULL,
+    file_type       VARCHAR(100) NOT NULL,
+    iv              TEXT         NOT NULL,
+    total_size      BIGINT       NOT NULL,
+    chunk_size      INTEGER      NOT NULL,
+    chunk_count     INTEGER      NOT NULL,
+    received        BYTEA        NOT NULL,
+    received_count  INTEGER      NOT NULL DEFAULT 0,
+    part_path       VARCHAR(500) NOT NULL,
+    created_at      TIMESTAMP    NOT NULL DEFAULT NOW(),
+    updated_at      TIMESTAMP    NOT NULL DEFAULT NOW()
+);
+
+-- Stale-session garbage collection scans by last activity
+CREATE INDEX IF NOT EXISTS idx_media_upload_sessions_updated_at ON media_upload_sessions (updated_at);
@@ -0,0 +1,40 @@
+-- Content-addressed media blobs: identical ciphertexts are stored once, keyed
+-- by their SHA-256. media_message rows that use the store point at a blob via
+-- blob_checksum; ref_count is maintained by trigger, and blobs whose count
+-- dropped to zero are deleted by the application after a grace period.
+CREATE TABLE IF NOT EXISTS media_blob (
+    checksum    VARCHAR(64)  PRIMARY KEY,       -- SHA-256 of the stored bytes, hex
+    size        BIGINT       NOT NULL,
+    blob_path   VARCHAR(500) NOT NULL,
+    ref_count   INTEGER      NOT NULL DEFAULT 0,
+    created_at  TIMESTAMP    NOT NULL DEFAULT NOW(),
+    zero_since  TIMESTAMP    DEFAULT NOW()      -- when ref_count last reached 0; NULL while referenced
+);
+
+CREATE INDEX IF NOT EXISTS idx_media_blob_unreferenced ON media_blob (zero_since) WHERE ref_count = 0;
+
+ALTER TABLE media_message ADD COLUMN IF NOT EXISTS blob_checksum VARCHAR(64) REFERENCES media_blob(checksum);
+CREATE INDEX IF NOT EXISTS idx_media_blob_checksum ON media_message (blob_checksum) WHERE blob_checksum IS NOT NULL;
+
+CREATE OR REPLACE FUNCTION media_blob_refcount() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.blob_checksum IS NOT NULL THEN
+        UPDATE media_blob
+        SET ref_count = ref_count - 1,
+            zero_since = CASE WHEN ref_count - 1 = 0 THEN NOW() ELSE zero_since END
+        WHERE checksum = OLD.blob_checksum;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.blob_checksum IS NOT NULL THEN
+        UPDATE media_blob
+        SET ref_count = ref_count + 1,
+            zero_since = NULL
+        WHERE checksum = NEW.blob_checksum;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS media_blob_refcount ON media_message;
+CREATE TRIGGER media_blob_refcount
+AFTER INSERT OR DELETE OR UPDATE OF blob_checksum ON media_message
+FOR EACH ROW EXECUTE FUNCTION media_blob_refcount();
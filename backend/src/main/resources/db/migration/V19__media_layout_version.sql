@@ -0,0 +1,11 @@
+-- On-disk layout of media_message.file_path:
+--   1 = flat     <uploadDir>/<groupId>/<name>
+--   2 = sharded  <uploadDir>/<groupId>/ab/cd/<name>  (or a content-addressed blob path)
+-- Existing rows start at 1 and are moved in the background by MediaLayoutMigrator.
+ALTER TABLE media_message ADD COLUMN IF NOT EXISTS layout_version SMALLINT NOT NULL DEFAULT 1;
+
+-- Blob-store paths are already sharded by content hash
+UPDATE media_message SET layout_version = 2 WHERE blob_checksum IS NOT NULL AND layout_version = 1;
+
+-- The migrator walks the remaining flat rows in id order
+CREATE INDEX IF NOT EXISTS idx_media_message_flat_layout ON media_message (media_id) WHERE layout_version = 1;
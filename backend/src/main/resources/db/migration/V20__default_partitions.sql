@@ -0,0 +1,46 @@
+-- DEFAULT partitions catch rows whose created_at falls outside the monthly
+-- partitions created so far (clock skew, imports of old history), so such
+-- inserts no longer fail.
+CREATE TABLE IF NOT EXISTS messages_default PARTITION OF messages DEFAULT;
+CREATE TABLE IF NOT EXISTS message_delivery_default PARTITION OF message_delivery DEFAULT;
+
+-- With a DEFAULT partition, creating a month fails if the default already holds
+-- rows of that month. Such rows are moved into the new partition, which is
+-- built standalone and then attached.
+CREATE OR REPLACE FUNCTION create_monthly_partitions(parent TEXT, from_date DATE, to_date DATE)
+RETURNS INT AS $$
+DECLARE
+    m DATE := date_trunc('month', from_date)::date;
+    next_m DATE;
+    part TEXT;
+    default_part TEXT := parent || '_default';
+    has_rows BOOLEAN;
+    created INT := 0;
+BEGIN
+    WHILE m <= to_date LOOP
+        part := format('%s_%s', parent, to_char(m, 'YYYYMM'));
+        next_m := (m + INTERVAL '1 month')::date;
+        IF to_regclass(part) IS NULL THEN
+            has_rows := FALSE;
+            IF to_regclass(default_part) IS NOT NULL THEN
+                EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I WHERE created_at >= %L AND created_at < %L)',
+                               default_part, m, next_m) INTO has_rows;
+            END IF;
+
+            IF has_rows THEN
+                EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part, parent);
+                EXECUTE format('WITH moved AS (DELETE FROM %I WHERE created_at >= %L AND created_at < %L RETURNING *) ' ||
+                               'INSERT INTO %I SELECT * FROM moved', default_part, m, next_m, part);
+                EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                               parent, part, m, next_m);
+            ELSE
+                EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                               part, parent, m, next_m);
+            END IF;
+            created := created + 1;
+        END IF;
+        m := next_m;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,5 @@
+-- Failed layout moves are recorded so the migrator backs off instead of
+-- re-picking the same rows every run, and gives up after a few attempts.
+ALTER TABLE media_message ADD COLUMN IF NOT EXISTS layout_attempts SMALLINT NOT NULL DEFAULT 0;
+ALTER TABLE media_message ADD COLUMN IF NOT EXISTS layout_retry_at TIMESTAMP;
+ALTER TABLE media_message ADD COLUMN IF NOT EXISTS layout_error VARCHAR(500);
@@ -0,0 +1,15 @@
+-- Client-generated message ids (client_id on the WebSocket), so a message sent
+-- again after its acknowledgement was lost is stored only once. messages is
+-- partitioned by created_at and cannot enforce (sender_id, client_id) itself,
+-- so the pair is claimed here, in the transaction that saves the message.
+-- Rows are purged after chatapp.messages.client-id-retention-hours.
+CREATE TABLE IF NOT EXISTS message_client_ids (
+    sender_id           BIGINT       NOT NULL,
+    client_id           VARCHAR(100) NOT NULL,
+    message_id          BIGINT,
+    message_created_at  TIMESTAMP,
+    claimed_at          TIMESTAMP    NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (sender_id, client_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_client_ids_claimed_at ON message_client_ids (claimed_at);
@@ -0,0 +1,15 @@
+-- Bulk history import jobs (progress is committed with every COPY batch so a
+-- failed import can be resumed from the last committed record)
+CREATE TABLE import_jobs (
+    job_id BIGSERIAL PRIMARY KEY,
+    target VARCHAR(32) NOT NULL,          -- messages | group_members | media_message
+    format VARCHAR(8) NOT NULL,           -- ndjson | csv
+    source_name VARCHAR(255),
+    status VARCHAR(16) NOT NULL,          -- RUNNING | COMPLETED | FAILED
+    rows_committed BIGINT NOT NULL DEFAULT 0,
+    rows_rejected BIGINT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    started_at TIMESTAMP DEFAULT NOW(),
+    updated_at TIMESTAMP DEFAULT NOW(),
+    finished_at TIMESTAMP
+);
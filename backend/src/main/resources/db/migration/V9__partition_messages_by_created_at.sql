@@ -0,0 +1,82 @@
+-- Range-partition messages and message_delivery by created_at (one partition per month).
+-- Old months can then be dropped as a whole instead of DELETEd row by row.
+
+-- 1) Helper used by migrations, the maintenance job and the importer:
+--    creates any missing monthly partitions of parent between the two dates.
+CREATE OR REPLACE FUNCTION create_monthly_partitions(parent TEXT, from_date DATE, to_date DATE)
+RETURNS INT AS $$
+DECLARE
+    m DATE := date_trunc('month', from_date)::date;
+    part TEXT;
+    created INT := 0;
+BEGIN
+    WHILE m <= to_date LOOP
+        part := format('%s_%s', parent, to_char(m, 'YYYYMM'));
+        IF to_regclass(part) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                           part, parent, m, (m + INTERVAL '1 month')::date);
+            created := created + 1;
+        END IF;
+        m := (m + INTERVAL '1 month')::date;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 2) Move the old tables aside
+ALTER TABLE messages RENAME TO messages_legacy;
+ALTER TABLE message_delivery RENAME TO message_delivery_legacy;
+
+-- Keep the id sequence; it is re-owned by the new table (and widened to BIGINT)
+ALTER SEQUENCE messages_message_id_seq OWNED BY NONE;
+ALTER SEQUENCE messages_message_id_seq AS BIGINT;
+
+-- 3) Partitioned tables. The partition key must be part of the primary key,
+--    so message_delivery can no longer carry a FK to messages(message_id).
+CREATE TABLE messages (
+    message_id BIGINT NOT NULL DEFAULT nextval('messages_message_id_seq'),
+    sender_id BIGINT REFERENCES users(user_id),
+    group_id BIGINT REFERENCES groups(group_id),
+    content TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    media_id BIGINT REFERENCES media_message(media_id) ON DELETE SET NULL,
+    PRIMARY KEY (message_id, created_at),
+    CONSTRAINT chk_message_content_or_media CHECK ((content IS NOT NULL) OR (media_id IS NOT NULL))
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE messages_message_id_seq OWNED BY messages.message_id;
+
+CREATE TABLE message_delivery (
+    message_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL REFERENCES users(user_id),
+    delivered BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),  -- copy of the message's created_at
+    PRIMARY KEY (message_id, user_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- 4) Partitions for existing data plus a few months ahead
+SELECT create_monthly_partitions('messages',
+        COALESCE((SELECT min(created_at) FROM messages_legacy), NOW())::date,
+        (NOW() + INTERVAL '3 months')::date);
+SELECT create_monthly_partitions('message_delivery',
+        COALESCE((SELECT min(created_at) FROM messages_legacy), NOW())::date,
+        (NOW() + INTERVAL '3 months')::date);
+
+-- 5) Copy data
+INSERT INTO messages (message_id, sender_id, group_id, content, created_at, media_id)
+SELECT message_id, sender_id, group_id, content, COALESCE(created_at, NOW()), media_id
+FROM messages_legacy;
+
+INSERT INTO message_delivery (message_id, user_id, delivered, created_at)
+SELECT d.message_id, d.user_id, COALESCE(d.delivered, FALSE), COALESCE(m.created_at, NOW())
+FROM message_delivery_legacy d
+JOIN messages_legacy m ON m.message_id = d.message_id;
+
+DROP TABLE message_delivery_legacy;
+DROP TABLE messages_legacy;
+
+-- 6) Indexes (created on the parent, cascaded to every partition)
+CREATE INDEX idx_messages_group_created ON messages (group_id, created_at);
+CREATE INDEX idx_messages_sender ON messages (sender_id);
+CREATE INDEX idx_message_media ON messages (media_id);
+CREATE INDEX idx_message_delivery_user ON message_delivery (user_id);
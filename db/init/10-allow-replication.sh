@@ -0,0 +1,5 @@
+#!/bin/bash
+# Lets the optional db-replica service (compose profile "replica") stream WAL
+# from this instance. Runs only when the data volume is first initialised.
+set -e
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -82,7 +82,8 @@ export const AuthProvider = ({ children }) => {
     sendTypingIndicator: rawSendTypingIndicator,
     disconnect,
     showNotification,
-    uploadMedia
+    uploadMedia,
+    sendInlineMedia
   } = useWebSocket(user?.userId, user?.token);
 
   // ✅ UPDATED: Robust wrapper to always ensure a username is sent
@@ -444,7 +445,8 @@ const login = useCallback(async (email, password) => {
     sendTypingIndicator,
     apiBaseUrl,
     showNotification,
-    uploadMedia
+    uploadMedia,
+    sendInlineMedia
   }), [
     user,
     loading,
@@ -461,6 +463,7 @@ const login = useCallback(async (email, password) => {
     apiBaseUrl,
     showNotification,
     uploadMedia,
+    sendInlineMedia,
     typingUsers
   ]);
 
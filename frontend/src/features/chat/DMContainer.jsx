@@ -649,7 +649,7 @@ const DMContainer = () => {
       if (targetGroupId) {
         console.log('📤 [DM_CONTAINER] Sending message to group:', targetGroupId);
 
-        const tempId = `optimistic-${Date.now()}-${Math.random().toString(36).substr(2, 9)}`;
+        const tempId = messageData.clientId || `optimistic-${Date.now()}-${Math.random().toString(36).substr(2, 9)}`;
         const optimisticMessage = {
           id: tempId,
           content: hasContent ? content.trim() : '',
@@ -666,6 +666,7 @@ const DMContainer = () => {
         setLocalMessages(prev => [...prev, optimisticMessage]);
 
         const success = sendMessage({
+          id: tempId,
           groupId: targetGroupId,
           content: hasContent ? content.trim() : "",
           media: hasMedia ? media : null
@@ -355,7 +355,7 @@ const ChatContainer = () => {
     fetchGroupMembers();
   }, [activeGroup, token]);
 
-  const handleSendMessage = ({ content, media }) => {
+  const handleSendMessage = ({ content, media, clientId }) => {
     if (!activeGroup) return;
 
     const hasContent = content && content.trim() !== '';
@@ -363,7 +363,7 @@ const ChatContainer = () => {
 
     if (!hasContent && !hasMedia) return;
 
-    const tempId = `optimistic-${Date.now()}-${Math.random().toString(36).substr(2, 9)}`;
+    const tempId = clientId || `optimistic-${Date.now()}-${Math.random().toString(36).substr(2, 9)}`;
     const optimisticMessage = {
       id: tempId,
       content: hasContent ? content.trim() : '',
@@ -380,6 +380,7 @@ const ChatContainer = () => {
     setLocalMessages(prev => [...prev, optimisticMessage]);
 
     const success = sendMessage({
+      id: tempId,
       groupId: activeGroup.id,
       content: hasContent ? content.trim() : "",
       media: hasMedia ? media : null
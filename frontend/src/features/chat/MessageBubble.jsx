@@ -113,11 +113,23 @@ const downloadMediaWithAuth = async (mediaObj, fileName) => {
     return;
   }
 
-  // 🧠 STEP 2: Fetch the encrypted file
-  const response = await fetch(mediaUrl, {
-    method: 'GET',
-    headers: { 'Authorization': `Bearer ${token}` }
-  });
+  // 🧠 STEP 2: Fetch the encrypted file (straight from object storage when the backend offers a presigned URL)
+  let response = null;
+  if (mediaInfo.directDownload) {
+    const urlResponse = await fetch(`http://${hostIp}:8080/media/download-url/${mediaId}`, {
+      headers: { 'Authorization': `Bearer ${token}` }
+    });
+    if (urlResponse.ok) {
+      const { url } = await urlResponse.json();
+      response = await fetch(url).catch(() => null);
+    }
+  }
+  if (!response || !response.ok) {
+    response = await fetch(mediaUrl, {
+      method: 'GET',
+      headers: { 'Authorization': `Bearer ${token}` }
+    });
+  }
 
     if (!response.ok) {
       throw new Error(`HTTP error! status: ${response.status}`);
@@ -236,7 +248,9 @@ useEffect(() => {
 const { decryptedUrl, loading, error } = useDecryptedMedia(
   mediaUrl,
   resolvedIv,      // ✅ now always defined
-  message.groupId
+  message.groupId,
+  mediaId,
+  fileType
 );
 
 
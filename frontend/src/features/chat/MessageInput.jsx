@@ -2,6 +2,7 @@ import React, { useState, useRef, useEffect } from 'react';
 import EmojiPicker from 'emoji-picker-react';
 import { useAuth } from '../../context/AuthContext';
 import ApiClient from '../../services/api';
+import { INLINE_MEDIA_MAX_BYTES } from '../../services/inlineMediaCache';
 
 const MessageInput = ({
   onSendMessage,
@@ -14,7 +15,7 @@ const MessageInput = ({
   enableAI,
   lastMessage
 }) => {
-  const { uploadMedia } = useAuth();
+  const { uploadMedia, sendInlineMedia } = useAuth();
   const [message, setMessage] = useState("");
   const [showEmoji, setShowEmoji] = useState(false);
   const [selectedFile, setSelectedFile] = useState(null);
@@ -107,6 +108,24 @@ const MessageInput = ({
       setIsUploading(true);
       setUploadProgress(0);
 
+      // One id for the inline attempt and the upload fallback, so a resend is stored once
+      const clientId = `optimistic-${Date.now()}-${Math.random().toString(36).substr(2, 9)}`;
+
+      // Small attachments without a caption go over the WebSocket in one frame;
+      // the server stores and sends the message itself, so we are done on success
+      if (!hasText && selectedFile.size <= INLINE_MEDIA_MAX_BYTES) {
+        const sentInline = await sendInlineMedia(selectedFile, activeGroupId, clientId);
+        if (sentInline) {
+          setSelectedFile(null);
+          if (fileInputRef.current) {
+            fileInputRef.current.value = '';
+          }
+          setIsUploading(false);
+          setUploadProgress(0);
+          return;
+        }
+      }
+
       try {
         const uploadResult = await uploadMedia(selectedFile, activeGroupId, (progress) => {
           setUploadProgress(progress);
@@ -153,7 +172,8 @@ const MessageInput = ({
 
         await onSendMessage({
           content: hasText ? message.trim() : "",
-          media: uploadedMediaObj
+          media: uploadedMediaObj,
+          clientId
         });
       } catch (error) {
         console.error('❌ Error uploading file:', error);
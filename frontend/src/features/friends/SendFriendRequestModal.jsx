@@ -3,76 +3,48 @@ import ApiClient from '../../services/api';             // UPDATED
 
 const SendFriendRequestModal = ({ isOpen, onClose, onFriendRequestSent, currentUserId, isDarkMode, colors }) => {
   const [username, setUsername] = useState('');
-  const [users, setUsers] = useState([]);
   const [filteredUsers, setFilteredUsers] = useState([]);
   const [loading, setLoading] = useState(false);
   const [sending, setSending] = useState(false);
   const [error, setError] = useState('');
 
-  // Fetch all users when modal opens
+  // Ask the server for matching usernames as the user types (prefix autocomplete)
   useEffect(() => {
-    if (isOpen) {
-      fetchAllUsers();
-    }
-  }, [isOpen]);
-
-  // Filter users based on search input
-  useEffect(() => {
-    if (username.trim() === '') {
+    const prefix = username.trim();
+    if (!isOpen || prefix === '') {
       setFilteredUsers([]);
-    } else {
-      const filtered = users.filter(user => 
-        user.username.toLowerCase().includes(username.toLowerCase()) && 
-        user.userId !== currentUserId
-      );
-      setFilteredUsers(filtered);
+      setLoading(false);
+      return;
     }
-  }, [username, users, currentUserId]);
 
-  const fetchAllUsers = async () => {
+    let cancelled = false;
     setLoading(true);
-    setError('');
-    try {
-      // Get all usernames
-      const usernames = await ApiClient.users.getAllUsernames();
-      
-      // Get details for each user - simplified approach
-      const userDetails = [];
-      for (const username of usernames) {
-        try {
-          // Try to get user by email (assuming email is username@example.com)
-          const email = `${username}@example.com`;
-          const userByEmail = await ApiClient.users.getUserByEmail(email);
-          userDetails.push({
-            userId: userByEmail.userId,
-            username: userByEmail.username,
-            email: userByEmail.email
-          });
-        } catch (emailErr) {
-          // If email approach fails, try search
-          try {
-            const searchResults = await ApiClient.users.search(username);
-            if (searchResults.length > 0) {
-              userDetails.push({
-                userId: searchResults[0].userId,
-                username: searchResults[0].username,
-                email: searchResults[0].email
-              });
-            }
-          } catch (searchErr) {
-            console.log('Could not fetch details for user:', username);
-          }
-        }
+    const timer = setTimeout(async () => {
+      setError('');
+      try {
+        const matches = await ApiClient.users.autocomplete(prefix, 20);
+        if (cancelled) return;
+        setFilteredUsers((matches || [])
+          .map(user => ({
+            userId: user.user_id ?? user.userId,
+            username: user.username,
+            email: user.email
+          }))
+          .filter(user => user.userId !== currentUserId));
+      } catch (err) {
+        if (cancelled) return;
+        setError('Failed to search users: ' + err.message);
+        console.error('Error searching users:', err);
+      } finally {
+        if (!cancelled) setLoading(false);
       }
-      
-      setUsers(userDetails);
-    } catch (err) {
-      setError('Failed to fetch users: ' + err.message);
-      console.error('Error fetching users:', err);
-    } finally {
-      setLoading(false);
-    }
-  };
+    }, 250);
+
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
+  }, [username, isOpen, currentUserId]);
 
   const handleSendRequest = async (receiverId) => {
     setSending(true);
@@ -168,9 +140,11 @@ const SendFriendRequestModal = ({ isOpen, onClose, onFriendRequestSent, currentU
                       <p className={`font-medium ${isDarkMode ? 'text-white' : 'text-gray-900'}`}>
                         {user.username}
                       </p>
-                      <p className={`text-sm ${isDarkMode ? 'text-gray-400' : 'text-gray-500'}`}>
-                        {user.email}
-                      </p>
+                      {user.email && (
+                        <p className={`text-sm ${isDarkMode ? 'text-gray-400' : 'text-gray-500'}`}>
+                          {user.email}
+                        </p>
+                      )}
                     </div>
                     <button
                       disabled={sending}
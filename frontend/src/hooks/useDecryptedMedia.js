@@ -2,8 +2,10 @@ import { useState, useEffect } from 'react';
 import { useAuth } from '../context/AuthContext';
 import { decryptFile } from '../utils/cryptoUtils';
 import * as keyCache from '../services/keyCache';
+import * as inlineMediaCache from '../services/inlineMediaCache';
 
-export const useDecryptedMedia = (mediaUrl, mediaIv, groupId) => {
+// mediaId / fileType are optional: attachments that arrived over the WebSocket are decrypted from memory
+export const useDecryptedMedia = (mediaUrl, mediaIv, groupId, mediaId, fileType) => {
   const { token } = useAuth();
   const [decryptedUrl, setDecryptedUrl] = useState(null);
   const [loading, setLoading] = useState(true);
@@ -29,19 +31,24 @@ export const useDecryptedMedia = (mediaUrl, mediaIv, groupId) => {
           groupId
         });
 
-        // 1️⃣ Fetch encrypted file
-        const response = await fetch(mediaUrl, {
-          method: 'GET',
-          headers: { 'Authorization': `Bearer ${token}` }
-        });
-
-        if (!response.ok) {
-          throw new Error(`HTTP error ${response.status}`);
+        // 1️⃣ Fetch encrypted file (unless it came inline)
+        let encryptedBuffer = inlineMediaCache.get(mediaId);
+        let contentType = fileType;
+        if (!encryptedBuffer) {
+          const response = await fetch(mediaUrl, {
+            method: 'GET',
+            headers: { 'Authorization': `Bearer ${token}` }
+          });
+
+          if (!response.ok) {
+            throw new Error(`HTTP error ${response.status}`);
+          }
+
+          const encryptedBlob = await response.blob();
+          encryptedBuffer = await encryptedBlob.arrayBuffer();
+          contentType = response.headers.get('Content-Type') || contentType;
         }
 
-        const encryptedBlob = await response.blob();
-        const encryptedBuffer = await encryptedBlob.arrayBuffer();
-
         // 2️⃣ Get group key
         const groupKey = await keyCache.getGroupKey(groupId);
         
@@ -62,8 +69,7 @@ export const useDecryptedMedia = (mediaUrl, mediaIv, groupId) => {
         );
 
         // 4️⃣ Create blob and object URL
-        const contentType = response.headers.get('Content-Type') || 'application/octet-stream';
-        const blob = new Blob([decryptedBuffer], { type: contentType });
+        const blob = new Blob([decryptedBuffer], { type: contentType || 'application/octet-stream' });
         objectUrl = URL.createObjectURL(blob);
         
         setDecryptedUrl(objectUrl);
@@ -86,7 +92,7 @@ export const useDecryptedMedia = (mediaUrl, mediaIv, groupId) => {
         URL.revokeObjectURL(objectUrl);
       }
     };
-  }, [mediaUrl, mediaIv, groupId, token]);
+  }, [mediaUrl, mediaIv, groupId, token, mediaId, fileType]);
 
   return { decryptedUrl, loading, error };
 };
\ No newline at end of file
@@ -4,9 +4,75 @@ import { encryptMessage, decryptMessage } from "../utils/cryptoUtils";
 import { encryptFile, base64ToUint8 } from "../utils/cryptoUtils";
 import * as keyCache from "../services/keyCache";
 import * as groupKeyService from "../services/groupKeyService";
+import * as inlineMediaCache from "../services/inlineMediaCache";
 
 import ApiClient from '../services/api';
 
+// Attachments above this go through the resumable /media/uploads API in chunks,
+// so a dropped connection only costs the chunk in flight
+const RESUMABLE_UPLOAD_THRESHOLD = 8 * 1024 * 1024;
+// Must stay within the server's chatapp.media.uploads.min/max-chunk-bytes
+const UPLOAD_CHUNK_BYTES = 4 * 1024 * 1024;
+const MAX_UPLOAD_RETRIES = 5;
+
+const sleep = (ms) => new Promise((resolve) => setTimeout(resolve, ms));
+
+const sha256Hex = async (bytes) => {
+  const digest = new Uint8Array(await crypto.subtle.digest('SHA-256', bytes));
+  return Array.from(digest, (b) => b.toString(16).padStart(2, '0')).join('');
+};
+
+// Create a session, PUT each chunk (retrying a chunk on network errors and 429),
+// then complete with the SHA-256 so the server verifies the assembled file
+const uploadResumable = async (baseUrl, token, bytes, groupId, meta, onProgress) => {
+  const request = async (method, path, body, contentType) => {
+    for (let attempt = 0; ; attempt++) {
+      let response;
+      try {
+        response = await fetch(`${baseUrl}${path}`, {
+          method,
+          body,
+          headers: {
+            Authorization: `Bearer ${token}`,
+            ...(contentType ? { 'Content-Type': contentType } : {})
+          }
+        });
+      } catch (error) {
+        if (attempt >= MAX_UPLOAD_RETRIES) throw error;
+        await sleep(1000 * 2 ** attempt);
+        continue;
+      }
+      if (response.status === 429 && attempt < MAX_UPLOAD_RETRIES) {
+        await sleep((parseInt(response.headers.get('Retry-After'), 10) || 1) * 1000);
+        continue;
+      }
+      if (!response.ok) throw new Error(`Upload failed (${response.status})`);
+      return response.json();
+    }
+  };
+
+  const session = await request('POST', '/media/uploads', JSON.stringify({
+    groupId,
+    fileName: meta.fileName,
+    fileType: meta.fileType,
+    iv: meta.iv,
+    totalSize: bytes.length,
+    chunkSize: UPLOAD_CHUNK_BYTES
+  }), 'application/json');
+
+  let sent = 0;
+  for (const index of session.missingChunks) {
+    const start = index * session.chunkSize;
+    const chunk = bytes.slice(start, start + session.chunkSize);
+    await request('PUT', `/media/uploads/${session.uploadId}/chunks/${index}`, chunk, 'application/octet-stream');
+    sent += chunk.length;
+    if (onProgress) onProgress(Math.round((sent / bytes.length) * 100));
+  }
+
+  const checksum = await sha256Hex(bytes);
+  return request('POST', `/media/uploads/${session.uploadId}/complete?checksum=${checksum}`);
+};
+
 const useWebSocket = (userId, token) => {
   const [isConnected, setIsConnected] = useState(false);
   const [messages, setMessages] = useState([]);
@@ -20,9 +86,11 @@ const useWebSocket = (userId, token) => {
   const reconnectAttempts = useRef(0);
   const pendingMessages = useRef([]);
   const processedMessageIds = useRef(new Set());
+  const pendingInlineMedia = useRef(new Map()); // client_id -> { ciphertext, resolve, timer }
 
   const maxReconnectAttempts = 5;
   const reconnectInterval = 3000;
+  const inlineMediaAckTimeout = 15000;
 
   // Request notification permission on mount
   useEffect(() => {
@@ -101,6 +169,17 @@ const handleIncomingMessage = useCallback(async(data) => {
 
   const messageType = data.type || data.message_type || data.messageType;
 
+  // Ack or rejection of an attachment we sent inline
+  const inlinePending = data.client_id ? pendingInlineMedia.current.get(data.client_id) : null;
+  if (inlinePending) {
+    pendingInlineMedia.current.delete(data.client_id);
+    clearTimeout(inlinePending.timer);
+    if (messageType === 'message' && data.media) {
+      inlineMediaCache.put(data.media.media_id || data.media.mediaId, inlinePending.ciphertext);
+    }
+    inlinePending.resolve(messageType === 'message');
+  }
+
   if (messageType === 'message' || messageType === 'MESSAGE' || messageType === 'chat_message') {
     const messageId = data.message_id || data.messageId || data.id || `ws-${Date.now()}-${Math.random()}`;
     
@@ -218,6 +297,9 @@ const handleIncomingMessage = useCallback(async(data) => {
       }
     });
   }
+  else if (messageType === 'message_error') {
+    console.warn(`⚠️ [WEBSOCKET] Message rejected: ClientID=${data.client_id} ${data.error}`);
+  }
   // ✅ NEW: Handle "Sent" ACK (Single Tick)
   else if (messageType === 'message_sent') {
       const realMessageId = data.message_id;
@@ -341,6 +423,7 @@ const handleIncomingMessage = useCallback(async(data) => {
       console.log('🔌 [WEBSOCKET] Connecting to WebSocket:', socketUrl);
 
       const socket = new WebSocket(socketUrl);
+      socket.binaryType = 'arraybuffer';
       
       socket.onopen = () => {
         console.log('✅ [WEBSOCKET] Connected');
@@ -354,6 +437,19 @@ const handleIncomingMessage = useCallback(async(data) => {
       };
 
       socket.onmessage = (event) => {
+        // Binary frames are messages carrying a small attachment inline
+        if (event.data instanceof ArrayBuffer) {
+          const frame = inlineMediaCache.decodeFrame(event.data);
+          if (!frame) {
+            console.error('❌ [WEBSOCKET] Malformed media frame');
+            return;
+          }
+          const media = frame.header.media;
+          if (media) inlineMediaCache.put(media.media_id || media.mediaId, frame.ciphertext);
+          handleIncomingMessage(frame.header);
+          return;
+        }
+
         try {
           const data = JSON.parse(event.data);
           handleIncomingMessage(data);
@@ -364,6 +460,12 @@ const handleIncomingMessage = useCallback(async(data) => {
 
       socket.onclose = (event) => {
         console.log('🔌 [WEBSOCKET] Disconnected:', event.code);
+        // Unacknowledged inline attachments fall back to the HTTP upload
+        pendingInlineMedia.current.forEach(pending => {
+          clearTimeout(pending.timer);
+          pending.resolve(false);
+        });
+        pendingInlineMedia.current.clear();
         setIsConnected(false);
         websocketRef.current = null;
         if (event.code !== 1000 && reconnectAttempts.current < maxReconnectAttempts) {
@@ -416,8 +518,8 @@ const sendMessage = useCallback(async (message) => {
   if (!hasContent && !hasMedia) return false;
 
   // Extract the ID from the message object if passed (it should be there from handleSendMessage)
-  // We use this ID as client_id to match the ACK later
-  const clientId = message.id || `optimistic-${Date.now()}-${Math.random()}`;
+  // We use this ID as client_id to match the ACK later; the server drops a client_id it already stored
+  const clientId = message.id || message.clientId || `optimistic-${Date.now()}-${Math.random()}`;
 
   let encryptedContent = message.content;
   if (hasContent) {
@@ -521,15 +623,21 @@ const sendMessage = useCallback(async (message) => {
   try {
     const fileBuffer = await file.arrayBuffer();
     const { iv, ciphertext } = await encryptFile(fileBuffer, groupKey);
-    const encryptedBlob = new Blob([base64ToUint8(ciphertext)], { type: file.type });
-    const formData = new FormData();
-    formData.append('file', encryptedBlob, file.name);
-    formData.append('iv', iv);
-
+    const encryptedBytes = base64ToUint8(ciphertext);
     const hostIp = import.meta.env.VITE_HOST_IP || 'localhost';
-    const uploadUrl = `http://${hostIp}:8080/media/upload/${groupId}`;
 
-    return new Promise((resolve, reject) => {
+    if (encryptedBytes.length > RESUMABLE_UPLOAD_THRESHOLD) {
+      return await uploadResumable(`http://${hostIp}:8080`, token, encryptedBytes, groupId,
+        { fileName: file.name, fileType: file.type || '', iv }, onProgress);
+    }
+
+    // Raw-body upload: the server writes the stream straight to disk
+    const encryptedBlob = new Blob([encryptedBytes], { type: 'application/octet-stream' });
+    const params = new URLSearchParams({ iv, fileName: file.name, fileType: file.type || '' });
+    const uploadUrl = `http://${hostIp}:8080/media/upload-stream/${groupId}?${params}`;
+
+    // The server answers 429 + Retry-After when too many uploads are running; wait and try again
+    const send = (attempt) => new Promise((resolve, reject) => {
       const xhr = new XMLHttpRequest();
       xhr.upload.addEventListener('progress', (event) => {
         if (event.lengthComputable && onProgress) {
@@ -543,17 +651,61 @@ const sendMessage = useCallback(async (message) => {
             const response = JSON.parse(xhr.responseText);
             resolve(response);
           } catch (e) { reject(e); }
+        } else if (xhr.status === 429 && attempt < 5) {
+          const waitSeconds = parseInt(xhr.getResponseHeader('Retry-After'), 10) || 1;
+          setTimeout(() => send(attempt + 1).then(resolve, reject), waitSeconds * 1000);
         } else { reject(new Error(`Upload failed`)); }
       });
       xhr.open('POST', uploadUrl);
       xhr.setRequestHeader('Authorization', `Bearer ${token}`);
-      xhr.send(formData);
+      xhr.setRequestHeader('Content-Type', 'application/octet-stream');
+      xhr.send(encryptedBlob);
     });
+    return send(0);
   } catch (error) {
     return false;
   }
 }, [token]);
 
+  // Send a small attachment as one binary frame; resolves false (so the caller can
+  // fall back to uploadMedia) when the socket is down, the file is too large or the server refuses it.
+  // The fallback message must reuse clientId: if the frame was stored but the ack lost, the server
+  // then recognizes the resend and does not store the message twice.
+  const sendInlineMedia = useCallback(async (file, groupId, clientId) => {
+    const socket = websocketRef.current;
+    if (!file || !groupId || !socket || socket.readyState !== WebSocket.OPEN) return false;
+
+    const groupKey = await keyCache.getGroupKey(groupId);
+    if (!groupKey) return false;
+
+    try {
+      const { iv, ciphertext } = await encryptFile(await file.arrayBuffer(), groupKey);
+      const bytes = base64ToUint8(ciphertext);
+      if (bytes.length > inlineMediaCache.INLINE_MEDIA_MAX_BYTES) return false;
+
+      const header = {
+        type: 'message',
+        group_id: groupId,
+        client_id: clientId,
+        file_name: file.name,
+        file_type: file.type || '',
+        iv
+      };
+
+      return await new Promise((resolve) => {
+        const timer = setTimeout(() => {
+          pendingInlineMedia.current.delete(clientId);
+          resolve(false);
+        }, inlineMediaAckTimeout);
+        pendingInlineMedia.current.set(clientId, { ciphertext: bytes, resolve, timer });
+        socket.send(inlineMediaCache.encodeFrame(header, bytes));
+      });
+    } catch (error) {
+      console.error('❌ [WEBSOCKET] Inline media send failed:', error);
+      return false;
+    }
+  }, []);
+
   useEffect(() => {
     if (userId && token) connect();
     return () => disconnect();
@@ -578,6 +730,7 @@ const sendMessage = useCallback(async (message) => {
     sendFileChunk,
     sendFileEnd,
     uploadMedia,
+    sendInlineMedia,
     joinGroup,
     leaveGroup,
     sendTypingIndicator,
@@ -57,14 +57,30 @@ const Dashboard = () => {
   }, [user]);
 
   useEffect(() => {
-    if (searchQuery.trim() === '') {
+    const query = searchQuery.trim();
+    if (query === '') {
       setFilteredUsers(users.filter(username => username !== user?.username));
-    } else {
-      const filtered = users.filter(username =>
-        username.toLowerCase().includes(searchQuery.toLowerCase()) && username !== user?.username
-      );
-      setFilteredUsers(filtered);
+      return;
     }
+
+    // /users/usernames only returns the first page, so searches go to the server
+    let cancelled = false;
+    const timer = setTimeout(async () => {
+      try {
+        const matches = await ApiClient.users.autocomplete(query, 50);
+        if (cancelled) return;
+        setFilteredUsers((matches || [])
+          .map(match => match.username)
+          .filter(username => username !== user?.username));
+      } catch (error) {
+        console.error('❌ Dashboard - Error searching users:', error);
+      }
+    }, 250);
+
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
   }, [searchQuery, users, user]);
 
   const handleLogout = () => {
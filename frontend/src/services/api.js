@@ -373,9 +373,13 @@ if (!(userPrivateKey instanceof Uint8Array)) {
     getProfile: (userId) => 
       ApiClient.request(`/users/${userId}`),
 
-    // Get all usernames
-    getAllUsernames: () =>
-      ApiClient.request('/users/usernames'),
+    // Get usernames (paginated)
+    getAllUsernames: (page = 0, size = 100) =>
+      ApiClient.request(`/users/usernames?page=${page}&size=${size}`),
+
+    // Username prefix autocomplete
+    autocomplete: (prefix, limit = 10) =>
+      ApiClient.request(`/users/autocomplete?prefix=${encodeURIComponent(prefix)}&limit=${limit}`),
 
     // Get current user
     getCurrentUser: () =>
@@ -469,6 +473,13 @@ if (!(userPrivateKey instanceof Uint8Array)) {
         body: payload
       }),
 
+    // Wrapped keys for several members of one group, saved in a single request
+    uploadGroupMemberKeys: (keys) =>
+      ApiClient.request('/keys/group-member/batch', {
+        method: 'POST',
+        body: keys
+      }),
+
     getGroupMemberKey: (groupId, userId) =>
       ApiClient.request(`/keys/group-member/${groupId}/${userId}`)
   };
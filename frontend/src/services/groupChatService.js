@@ -62,7 +62,8 @@ class GroupChatService {
       });
       console.log('🔑 Uploaded group public key');
 
-      // Step 4️⃣ - Wrap group key for each member and upload
+      // Step 4️⃣ - Wrap group key for each member, then upload them all at once
+      const wrappedKeys = [];
       for (const userId of memberIds) {
         try {
           // Fetch user’s public key
@@ -78,20 +79,22 @@ class GroupChatService {
           const { iv, ciphertext } = await aesGcmEncryptRaw(aesWrapKey, groupKey);
           const wrapped = `${uint8ToBase64(iv)}:${uint8ToBase64(ciphertext)}`;
 
-          // Upload wrapped group key for member
-          await ApiClient.keys.uploadGroupMemberKey({
+          wrappedKeys.push({
             groupId,
             userId,
             encryptedGroupPrivateKey: wrapped,
             nonce: uint8ToBase64(iv)
           });
-
-          console.log(`🔐 Uploaded group key for user ${userId}`);
         } catch (err) {
           console.error(`❌ Failed to wrap key for member ${userId}:`, err);
         }
       }
 
+      if (wrappedKeys.length > 0) {
+        await ApiClient.keys.uploadGroupMemberKeys(wrappedKeys);
+        console.log(`🔐 Uploaded group keys for ${wrappedKeys.length} members`);
+      }
+
       console.log('🎉 Group creation + key setup complete');
       return groupResponse;
 
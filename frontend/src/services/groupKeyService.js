@@ -30,6 +30,7 @@ export async function createAndDistributeGroupKey(groupId, memberIds, getUserPub
       groupPublicKey: uint8ToBase64(ephPub) 
     });
 
+    const wrappedKeys = [];
     for (const userId of memberIds) {
       try {
         let pubBase64;
@@ -46,7 +47,7 @@ export async function createAndDistributeGroupKey(groupId, memberIds, getUserPub
         const { iv, ciphertext } = await aesGcmEncryptRaw(aesWrapKey, groupKey);
         const wrapped = `${uint8ToBase64(iv)}:${uint8ToBase64(ciphertext)}`;
 
-        await api.post("/api/keys/group-member", {
+        wrappedKeys.push({
           groupId,
           userId,
           encryptedGroupPrivateKey: wrapped,
@@ -57,6 +58,11 @@ export async function createAndDistributeGroupKey(groupId, memberIds, getUserPub
       }
     }
 
+    // One request for the whole group instead of one per member
+    if (wrappedKeys.length > 0) {
+      await api.keys.uploadGroupMemberKeys(wrappedKeys);
+    }
+
     return { 
       groupKeyUint8: groupKey, 
       ephemeralPubBase64: uint8ToBase64(ephPub) 
@@ -0,0 +1,55 @@
+/**
+ * Inline media - small attachments sent over the WebSocket as binary frames.
+ *
+ * Frame: [4-byte big-endian header length][UTF-8 JSON header][ciphertext]
+ *
+ * Ciphertext that arrived (or was sent) inline is kept here by media id so the
+ * message bubble can decrypt it without downloading it again.
+ */
+
+// Must not exceed the server's chatapp.ws.inline-media.max-bytes
+export const INLINE_MEDIA_MAX_BYTES = 256 * 1024;
+
+const MAX_ENTRIES = 100;
+
+// mediaId -> Uint8Array (insertion order = age)
+const cache = new Map();
+
+export function put(mediaId, ciphertext) {
+  if (mediaId == null || !ciphertext) return;
+  const key = String(mediaId);
+  cache.delete(key);
+  cache.set(key, ciphertext);
+  while (cache.size > MAX_ENTRIES) {
+    cache.delete(cache.keys().next().value);
+  }
+}
+
+export function get(mediaId) {
+  if (mediaId == null) return null;
+  return cache.get(String(mediaId)) || null;
+}
+
+export function encodeFrame(header, ciphertext) {
+  const headerBytes = new TextEncoder().encode(JSON.stringify(header));
+  const frame = new Uint8Array(4 + headerBytes.length + ciphertext.length);
+  new DataView(frame.buffer).setUint32(0, headerBytes.length);
+  frame.set(headerBytes, 4);
+  frame.set(ciphertext, 4 + headerBytes.length);
+  return frame;
+}
+
+// Returns { header, ciphertext } or null when the frame is malformed
+export function decodeFrame(buffer) {
+  if (!(buffer instanceof ArrayBuffer) || buffer.byteLength < 4) return null;
+  const headerLength = new DataView(buffer).getUint32(0);
+  if (headerLength === 0 || 4 + headerLength > buffer.byteLength) return null;
+
+  try {
+    const header = JSON.parse(new TextDecoder().decode(new Uint8Array(buffer, 4, headerLength)));
+    const ciphertext = new Uint8Array(buffer.slice(4 + headerLength));
+    return { header, ciphertext };
+  } catch (e) {
+    return null;
+  }
+}